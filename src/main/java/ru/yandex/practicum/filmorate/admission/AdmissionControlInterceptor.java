@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.yandex.practicum.filmorate.exception.RateLimitedLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Допуск к записи лайков и дружбы: частота запросов одного пользователя и общее число
+// одновременных запросов на класс эндпоинтов. Отказ (429) отдаётся до обращения к базе.
+@Component
+@Slf4j
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+    private static final String PERMIT_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".permit";
+    // Отказы сыплются как раз при злоупотреблении, поэтому в лог попадает не больше этого числа в секунду
+    private static final int REJECTION_LOG_LIMIT_PER_SECOND = 5;
+
+    private final ObjectMapper objectMapper;
+    private final UserRateLimiter rateLimiter;
+    private final Semaphore likePermits;
+    private final Semaphore friendPermits;
+    private final RateLimitedLog rejectionLog = new RateLimitedLog(REJECTION_LOG_LIMIT_PER_SECOND);
+
+    public AdmissionControlInterceptor(ObjectMapper objectMapper,
+                                       @Value("${filmorate.admission.slots:4096}") int slots,
+                                       @Value("${filmorate.admission.rate-per-second:20}") double ratePerSecond,
+                                       @Value("${filmorate.admission.burst:50}") int burst,
+                                       @Value("${filmorate.admission.max-concurrent-likes:8}") int maxConcurrentLikes,
+                                       @Value("${filmorate.admission.max-concurrent-friends:8}") int maxConcurrentFriends) {
+        this.objectMapper = objectMapper;
+        this.rateLimiter = new UserRateLimiter(slots, ratePerSecond, burst);
+        this.likePermits = new Semaphore(maxConcurrentLikes);
+        this.friendPermits = new Semaphore(maxConcurrentFriends);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (HttpMethod.GET.matches(request.getMethod())) return true;
+
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (pathVariables == null) return true;
+
+        // Для лайка действует userId, для дружбы - тот, кто добавляет или удаляет друга
+        boolean like = pathVariables.containsKey("userId");
+        String actor = like ? pathVariables.get("userId") : pathVariables.get("id");
+        if (actor == null) return true;
+
+        long userId;
+        try {
+            userId = Long.parseLong(actor);
+        } catch (NumberFormatException e) {
+            return true;
+        }
+
+        long waitNanos = rateLimiter.tryAcquire(userId, System.nanoTime());
+        if (waitNanos > 0) {
+            reject(response, waitNanos, "Пользователь " + userId + " превысил допустимую частоту запросов");
+            return false;
+        }
+
+        Semaphore permits = like ? likePermits : friendPermits;
+        if (!permits.tryAcquire()) {
+            reject(response, TimeUnit.SECONDS.toNanos(1), "Сервер перегружен, повторите запрос позже");
+            return false;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, permits);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object permits = request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permits != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            ((Semaphore) permits).release();
+        }
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos, String message) throws IOException {
+        int suppressed = rejectionLog.tryAcquire();
+        if (suppressed == 0) {
+            log.warn("Запрос отклонён: {}", message);
+        } else if (suppressed > 0) {
+            log.warn("Запрос отклонён: {} (ещё {} отказов пропущено)", message, suppressed);
+        }
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), Map.of("Слишком много запросов", message));
+    }
+}
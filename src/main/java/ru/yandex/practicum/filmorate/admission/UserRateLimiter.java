@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.admission;
+
+import java.util.Arrays;
+
+// Token bucket на пользователя в виде GCRA: на слот хранится только id и "теоретическое время прихода"
+// следующего запроса, поэтому проверка ничего не аллоцирует. Слоты - открытая таблица фиксированного
+// размера; при коллизии слот достаётся новому пользователю с полным ведром. Блокировки полосатые.
+public class UserRateLimiter {
+    private static final int STRIPES = 64;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long[] keys;
+    private final long[] arrivalTimes;
+    private final Object[] locks = new Object[STRIPES];
+    private final int mask;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    public UserRateLimiter(int slots, double ratePerSecond, int burst) {
+        int size = Integer.highestOneBit(Math.max(slots, STRIPES) - 1) << 1;
+        this.keys = new long[size];
+        this.arrivalTimes = new long[size];
+        this.mask = size - 1;
+        this.emissionIntervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * (Math.max(burst, 1) - 1);
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // 0 - запрос пропущен, иначе через сколько наносекунд появится следующий токен
+    public long tryAcquire(long userId, long nowNanos) {
+        int slot = slot(userId);
+        synchronized (locks[slot & (STRIPES - 1)]) {
+            long arrivalTime = keys[slot] == userId ? arrivalTimes[slot] : nowNanos;
+            long allowedAt = arrivalTime - burstToleranceNanos;
+            if (nowNanos - allowedAt < 0) {
+                return allowedAt - nowNanos;
+            }
+            keys[slot] = userId;
+            arrivalTimes[slot] = Math.max(arrivalTime, nowNanos) + emissionIntervalNanos;
+            return 0;
+        }
+    }
+
+    private int slot(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.analytics;
+
+import java.io.*;
+
+// Частоты id в таблице depth x width счётчиков. Оценка никогда не меньше истинной частоты
+// и с вероятностью 1 - e^-depth превышает её не больше чем на e / width от суммы всех событий.
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final int[][] counts;
+    private long total;
+
+    public CountMinSketch(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.counts = new int[depth][width];
+    }
+
+    public static CountMinSketch read(DataInput in) throws IOException {
+        CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+        sketch.total = in.readLong();
+        for (int[] row : sketch.counts) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = in.readInt();
+            }
+        }
+        return sketch;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeLong(total);
+        for (int[] row : counts) {
+            for (int count : row) {
+                out.writeInt(count);
+            }
+        }
+    }
+
+    // Добавляет событие и возвращает новую оценку частоты id
+    public long add(long id) {
+        long hash = Hashing.mix(id);
+        long second = Hashing.mix(hash);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = column(hash, second, row);
+            estimate = Math.min(estimate, ++counts[row][column]);
+        }
+        total++;
+        return estimate;
+    }
+
+    public long estimate(long id) {
+        long hash = Hashing.mix(id);
+        long second = Hashing.mix(hash);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[row][column(hash, second, row)]);
+        }
+        return estimate;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    // Оценка завышена не больше чем на это число с вероятностью getConfidence()
+    public long getMaxOverestimate() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    public double getConfidence() {
+        return 1 - Math.exp(-depth);
+    }
+
+    // Двойное хеширование: строки таблицы получают независимые столбцы из двух хешей
+    private int column(long hash, long second, int row) {
+        return (int) Long.remainderUnsigned(hash + row * second, width);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.analytics;
+
+// Перемешивание id в 64-битный хеш (финализатор MurmurHash3): соседние id дают независимые на вид биты
+final class Hashing {
+    private Hashing() {
+    }
+
+    static long mix(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.analytics;
+
+import java.io.*;
+import java.util.*;
+
+// Самые частые id: Count-Min считает частоты, а рядом хранится не больше capacity кандидатов
+// с наибольшими оценками. Id, вытесненный из кандидатов, вернётся, когда его оценка обгонит минимальную.
+public class HeavyHitters {
+    private final CountMinSketch sketch;
+    private final int capacity;
+    private final Map<Long, Long> candidates = new HashMap<>();
+
+    public HeavyHitters(int width, int depth, int capacity) {
+        this(new CountMinSketch(width, depth), capacity);
+    }
+
+    private HeavyHitters(CountMinSketch sketch, int capacity) {
+        this.sketch = sketch;
+        this.capacity = capacity;
+    }
+
+    public static HeavyHitters fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            HeavyHitters heavyHitters = new HeavyHitters(CountMinSketch.read(in), in.readInt());
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                long id = in.readLong();
+                heavyHitters.candidates.put(id, heavyHitters.sketch.estimate(id));
+            }
+            return heavyHitters;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            sketch.write(out);
+            out.writeInt(capacity);
+            out.writeInt(candidates.size());
+            for (long id : candidates.keySet()) {
+                out.writeLong(id);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public synchronized void add(long id) {
+        long estimate = sketch.add(id);
+        if (candidates.containsKey(id) || candidates.size() < capacity) {
+            candidates.put(id, estimate);
+            return;
+        }
+        Map.Entry<Long, Long> weakest = Collections.min(candidates.entrySet(), Map.Entry.comparingByValue());
+        if (estimate > weakest.getValue()) {
+            candidates.remove(weakest.getKey());
+            candidates.put(id, estimate);
+        }
+    }
+
+    // До limit пар (id, оценка частоты) по убыванию оценки
+    public synchronized List<Map.Entry<Long, Long>> top(int limit) {
+        return candidates.keySet().stream()
+                .map(id -> Map.entry(id, sketch.estimate(id)))
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public synchronized long getMaxOverestimate() {
+        return sketch.getMaxOverestimate();
+    }
+
+    public double getConfidence() {
+        return sketch.getConfidence();
+    }
+}
@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate.analytics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.model.HeavyHitterEstimate;
+import ru.yandex.practicum.filmorate.model.UniqueLikersEstimate;
+import ru.yandex.practicum.filmorate.storage.analytics.SketchStorage;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Приближённая аналитика лайков по дням (UTC) без GROUP BY по likes и film_genres:
+// HyperLogLog уникальных лайкнувших на жанр и Count-Min с кандидатами в самые лайкаемые фильмы.
+// Скетчи обновляются из LikeEvent и раз в persist-ms пишутся в базу; хранятся retention-days дней.
+// Снятые лайки не учитываются: скетчи умеют только добавлять.
+@Service
+@Slf4j
+public class LikeAnalytics implements DisposableBean {
+    private static final String GENRE_LIKERS = "GENRE_LIKERS";
+    private static final String FILM_LIKES = "FILM_LIKES";
+
+    private final SketchStorage sketchStorage;
+    private final int hllPrecision;
+    private final int cmsWidth;
+    private final int cmsDepth;
+    private final int candidates;
+    private final int retentionDays;
+
+    private final Map<LocalDate, DaySketches> days = new ConcurrentHashMap<>();
+    private final Set<LocalDate> dirtyDays = ConcurrentHashMap.newKeySet();
+
+    public LikeAnalytics(SketchStorage sketchStorage,
+                         @Value("${filmorate.analytics.hll-precision:12}") int hllPrecision,
+                         @Value("${filmorate.analytics.cms-width:2048}") int cmsWidth,
+                         @Value("${filmorate.analytics.cms-depth:4}") int cmsDepth,
+                         @Value("${filmorate.analytics.heavy-hitter-candidates:100}") int candidates,
+                         @Value("${filmorate.analytics.retention-days:30}") int retentionDays) {
+        this.sketchStorage = sketchStorage;
+        this.hllPrecision = hllPrecision;
+        this.cmsWidth = cmsWidth;
+        this.cmsDepth = cmsDepth;
+        this.candidates = candidates;
+        this.retentionDays = retentionDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        for (SketchStorage.StoredSketch stored : sketchStorage.findSince(oldestRetainedDay())) {
+            DaySketches day = days.computeIfAbsent(stored.day(), this::newDay);
+            if (GENRE_LIKERS.equals(stored.kind())) {
+                day.genres.put(stored.sketchKey(), HyperLogLog.fromBytes(stored.data()));
+            } else if (FILM_LIKES.equals(stored.kind())) {
+                day.films = HeavyHitters.fromBytes(stored.data());
+            }
+        }
+        log.info("Скетчи аналитики лайков загружены за {} дн.", days.size());
+    }
+
+    @EventListener
+    public void onLike(LikeEvent event) {
+        if (!event.isLiked()) return;
+
+        LocalDate date = LocalDate.ofInstant(event.getOccurredAt(), ZoneOffset.UTC);
+        DaySketches day = days.computeIfAbsent(date, this::newDay);
+        day.films.add(event.getFilmId());
+        if (event.getGenreIds() != null) {
+            for (int genreId : event.getGenreIds()) {
+                day.genres.computeIfAbsent(genreId, id -> new HyperLogLog(hllPrecision)).add(event.getUserId());
+            }
+        }
+        dirtyDays.add(date);
+    }
+
+    public List<UniqueLikersEstimate> getUniqueLikersByGenre(LocalDate date) {
+        DaySketches day = days.get(date);
+        if (day == null) return List.of();
+        return new TreeMap<>(day.genres).entrySet().stream()
+                .map(entry -> UniqueLikersEstimate.builder()
+                        .genreId(entry.getKey())
+                        .uniqueLikers(entry.getValue().estimate())
+                        .relativeStandardError(entry.getValue().getRelativeStandardError())
+                        .build())
+                .toList();
+    }
+
+    public List<HeavyHitterEstimate> getHeavyHitters(LocalDate date, int limit) {
+        DaySketches day = days.get(date);
+        if (day == null) return List.of();
+        HeavyHitters films = day.films;
+        long maxOverestimate = films.getMaxOverestimate();
+        return films.top(limit).stream()
+                .map(entry -> HeavyHitterEstimate.builder()
+                        .filmId(entry.getKey())
+                        .likes(entry.getValue())
+                        .maxOverestimate(maxOverestimate)
+                        .confidence(films.getConfidence())
+                        .build())
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.analytics.persist-ms:60000}")
+    public void persist() {
+        LocalDate oldest = oldestRetainedDay();
+        days.keySet().removeIf(date -> date.isBefore(oldest));
+        for (Iterator<LocalDate> iterator = dirtyDays.iterator(); iterator.hasNext(); ) {
+            LocalDate date = iterator.next();
+            iterator.remove();
+            DaySketches day = days.get(date);
+            if (day == null) continue;
+            try {
+                sketchStorage.save(FILM_LIKES, date, 0, day.films.toBytes());
+                day.genres.forEach((genreId, sketch) ->
+                        sketchStorage.save(GENRE_LIKERS, date, genreId, sketch.toBytes()));
+            } catch (RuntimeException e) {
+                log.warn("Не удалось сохранить скетчи аналитики за {}: {}", date, e.getMessage());
+                dirtyDays.add(date);
+                return;
+            }
+        }
+        sketchStorage.deleteBefore(oldest);
+    }
+
+    @Override
+    public void destroy() {
+        persist();
+    }
+
+    private LocalDate oldestRetainedDay() {
+        return LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays - 1L);
+    }
+
+    private DaySketches newDay(LocalDate date) {
+        return new DaySketches(new HeavyHitters(cmsWidth, cmsDepth, candidates));
+    }
+
+    private static final class DaySketches {
+        private final Map<Integer, HyperLogLog> genres = new ConcurrentHashMap<>();
+        private volatile HeavyHitters films;
+
+        private DaySketches(HeavyHitters films) {
+            this.films = films;
+        }
+    }
+}
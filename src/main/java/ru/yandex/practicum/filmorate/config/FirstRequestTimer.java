@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Время от старта JVM до ответа на первый запрос: сколько новый экземпляр на самом деле
+// не принимает трафик при масштабировании. Пишется в лог и в метрику filmorate.startup.first-request
+@Component
+@Slf4j
+public class FirstRequestTimer extends OncePerRequestFilter {
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong firstRequestMillis = new AtomicLong(-1);
+
+    public FirstRequestTimer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (firstRequestMillis.get() < 0) {
+                long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+                if (firstRequestMillis.compareAndSet(-1, uptime)) {
+                    log.info("Первый запрос обслужен через {} мс после старта JVM", uptime);
+                    Gauge.builder("filmorate.startup.first-request", firstRequestMillis, millis -> millis.get() / 1000.0)
+                            .description("Время от старта JVM до ответа на первый запрос")
+                            .baseUnit("seconds")
+                            .register(meterRegistry);
+                }
+            }
+        }
+    }
+}
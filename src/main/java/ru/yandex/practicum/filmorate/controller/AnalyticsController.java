@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.analytics.LikeAnalytics;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.HeavyHitterEstimate;
+import ru.yandex.practicum.filmorate.model.UniqueLikersEstimate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+@RestController
+@RequestMapping("/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+    private final LikeAnalytics likeAnalytics;
+
+    @GetMapping("/genres/unique-likers")
+    public List<UniqueLikersEstimate> getUniqueLikersByGenre(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return likeAnalytics.getUniqueLikersByGenre(date != null ? date : LocalDate.now(ZoneOffset.UTC));
+    }
+
+    @GetMapping("/films/heavy-hitters")
+    public List<HeavyHitterEstimate> getHeavyHitters(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Количество фильмов должно быть положительным");
+        }
+        return likeAnalytics.getHeavyHitters(date != null ? date : LocalDate.now(ZoneOffset.UTC), limit);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+// Компактные бинарные кодировки для массовых выгрузок; конвертеры Jackson для них Spring MVC регистрирует сам
+final class BinaryMediaTypes {
+    static final String CBOR_VALUE = "application/cbor";
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    private static final List<MediaType> BINARY = List.of(
+            MediaType.parseMediaType(CBOR_VALUE), MediaType.parseMediaType(SMILE_VALUE));
+
+    private BinaryMediaTypes() {
+    }
+
+    // Клиент предпочёл CBOR или Smile: их вес q выше, чем у JSON, названного явно, и не ниже, чем у шаблона
+    // вроде */*, под который попадает JSON (при равном весе явно названный тип точнее шаблона)
+    static boolean isRequested(String accept) {
+        if (accept == null || accept.isBlank()) return false;
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        double binary = 0;
+        double json = 0;
+        double jsonWildcard = 0;
+        for (MediaType mediaType : mediaTypes) {
+            double quality = mediaType.getQualityValue();
+            if (BINARY.stream().anyMatch(mediaType::equalsTypeAndSubtype)) {
+                binary = Math.max(binary, quality);
+            } else if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_JSON)) {
+                json = Math.max(json, quality);
+            } else if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                jsonWildcard = Math.max(jsonWildcard, quality);
+            }
+        }
+        return binary > 0 && binary > json && binary >= jsonWildcard;
+    }
+}
@@ -3,13 +3,23 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.TrendWindow;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.FilmStreamService;
+import ru.yandex.practicum.filmorate.service.TrendingFilms;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/films")
@@ -18,6 +28,8 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final FilmStreamService filmStreamService;
+    private final TrendingFilms trendingFilms;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -31,8 +43,27 @@ public class FilmController {
     }
 
     @GetMapping
-    public Collection<Film> showFilms() {
-        return filmService.getAllFilms();
+    public ResponseEntity<?> showFilms(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                       @RequestParam(required = false) String fields,
+                                       @RequestParam(required = false) List<Long> ids) {
+        if (ids != null) {
+            Set<FilmField> requested = fields != null ? FilmField.parse(fields) : FilmField.ALL;
+            BatchResult<Film> batch = filmService.getFilms(ids, requested);
+            if (fields == null) return ResponseEntity.ok(batch);
+            return ResponseEntity.ok(BatchResult.<Map<String, Object>>builder()
+                    .items(project(batch.getItems(), requested))
+                    .missingIds(batch.getMissingIds())
+                    .build());
+        }
+        if (fields != null) {
+            Set<FilmField> requested = FilmField.parse(fields);
+            return ResponseEntity.ok(project(filmService.getAllFilms(requested), requested));
+        }
+        if (BinaryMediaTypes.isRequested(accept)) {
+            // Тип ответа выберет Jackson-конвертер CBOR или Smile по заголовку Accept
+            return ResponseEntity.ok(filmService.getAllFilms());
+        }
+        return json(filmService.getAllFilmsJson());
     }
 
     @DeleteMapping
@@ -41,10 +72,17 @@ public class FilmController {
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable long id) {
-        return filmService.getFilm(id)
-                .orElseThrow(() -> new ru.yandex.practicum.filmorate.exception.NotFoundException(
-                        "Фильм с ID " + id + " не найден"));
+    public ResponseEntity<?> getFilmById(@PathVariable long id, @RequestParam(required = false) String fields) {
+        Optional<ResponseEntity<?>> response;
+        if (fields != null) {
+            Set<FilmField> requested = FilmField.parse(fields);
+            response = filmService.getFilm(id, requested)
+                    .map(film -> ResponseEntity.ok(FilmField.project(film, requested)));
+        } else {
+            response = filmService.getFilmJson(id).map(this::json);
+        }
+        return response.orElseThrow(() -> new ru.yandex.practicum.filmorate.exception.NotFoundException(
+                "Фильм с ID " + id + " не найден"));
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -58,8 +96,35 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLikes() {
+        return filmStreamService.subscribe();
+    }
+
+    @GetMapping("/trending")
+    public List<Film> getTrendingFilms(@RequestParam(defaultValue = "day") String window,
+                                       @RequestParam(defaultValue = "10") int count) {
+        return trendingFilms.getTrending(TrendWindow.parse(window), count);
+    }
+
     @GetMapping("/popular")
-    public Collection<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        return filmService.getTopFilms(count);
+    public ResponseEntity<?> getPopularFilms(@RequestParam(defaultValue = "10") int count,
+                                             @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            Set<FilmField> requested = FilmField.parse(fields);
+            return ResponseEntity.ok(project(filmService.getTopFilms(count, requested), requested));
+        }
+        return json(filmService.getTopFilmsJson(count));
+    }
+
+    private List<Map<String, Object>> project(Collection<Film> films, Set<FilmField> fields) {
+        return films.stream()
+                .map(film -> FilmField.project(film, fields))
+                .collect(Collectors.toList());
+    }
+
+    // Тело уже сериализовано в FilmJsonCache, Jackson его не трогает
+    private ResponseEntity<?> json(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.ImportKind;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/import")
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class ImportController {
+    private final BulkImportService bulkImportService;
+
+    // Тело читается из потока запроса по мере записи, а не целиком через @RequestBody
+    @PostMapping("/{kind}")
+    public ImportReport importDump(@PathVariable String kind, HttpServletRequest request) throws IOException {
+        ImportKind importKind = ImportKind.parse(kind);
+        log.info("Запрос на импорт {}", importKind);
+        return bulkImportService.importNdjson(importKind, request.getInputStream());
+    }
+
+    @GetMapping
+    public List<ImportReport> getRunningImports() {
+        return bulkImportService.getRunningImports();
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.service.ReadModelService;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin/read-model")
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class ReadModelController {
+    private final ReadModelService readModelService;
+
+    @PostMapping("/rebuild")
+    public Map<String, Integer> rebuild() {
+        log.info("Запрос на пересборку read model фильмов");
+        return Map.of("films", readModelService.rebuild());
+    }
+
+    // Только проверка: GET могут повторять прокси и краулеры, поэтому исправление - отдельным POST
+    @GetMapping("/drift")
+    public Map<String, Object> checkDrift() {
+        return Map.of("driftedFilmIds", readModelService.checkDrift());
+    }
+
+    @PostMapping("/drift/repair")
+    public Map<String, Object> repairDrift() {
+        log.info("Запрос на исправление расхождений read model фильмов");
+        List<Long> driftedFilmIds = readModelService.repairDrift();
+        return Map.of("driftedFilmIds", driftedFilmIds, "repaired", !driftedFilmIds.isEmpty());
+    }
+}
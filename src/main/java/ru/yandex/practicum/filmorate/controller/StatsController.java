@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.CatalogStatistics;
+import ru.yandex.practicum.filmorate.service.CatalogStats;
+
+@RestController
+@RequestMapping("/stats")
+@RequiredArgsConstructor
+public class StatsController {
+    private final CatalogStats catalogStats;
+
+    @GetMapping
+    public CatalogStatistics getStatistics() {
+        return catalogStats.getStatistics();
+    }
+}
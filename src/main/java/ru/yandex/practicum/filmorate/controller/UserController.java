@@ -4,13 +4,24 @@ import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.FeedPage;
+import ru.yandex.practicum.filmorate.model.FriendPath;
+import ru.yandex.practicum.filmorate.model.FriendshipState;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.service.FeedService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/users")
@@ -19,6 +30,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final FeedService feedService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -36,13 +48,41 @@ public class UserController {
         userService.removeUser(user);
     }
 
-    @GetMapping
-    public Collection<User> showUsers() {
+    @DeleteMapping("/bulk")
+    public Map<String, Integer> deleteUsers(@RequestBody List<Long> ids) {
+        log.info("Запрос на массовое удаление {} пользователей", ids.size());
+        return Map.of("deleted", userService.removeUsers(ids));
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, BinaryMediaTypes.CBOR_VALUE,
+            BinaryMediaTypes.SMILE_VALUE})
+    public Object showUsers(@RequestParam(required = false) String fields,
+                            @RequestParam(required = false) List<Long> ids) {
+        if (ids != null) {
+            Set<UserField> requested = fields != null ? UserField.parse(fields) : UserField.ALL;
+            BatchResult<User> batch = userService.getUsers(ids, requested);
+            if (fields == null) return batch;
+            return BatchResult.<Map<String, Object>>builder()
+                    .items(project(batch.getItems(), requested))
+                    .missingIds(batch.getMissingIds())
+                    .build();
+        }
+        if (fields != null) {
+            Set<UserField> requested = UserField.parse(fields);
+            return project(userService.getAllUsers(requested), requested);
+        }
         return userService.getAllUsers();
     }
 
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable long id) {
+    public Object getUserById(@PathVariable long id, @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            Set<UserField> requested = UserField.parse(fields);
+            return userService.getUser(id, requested)
+                    .map(user -> UserField.project(user, requested))
+                    .orElseThrow(() -> new ru.yandex.practicum.filmorate.exception.NotFoundException(
+                            "Пользователь с ID " + id + " не найден"));
+        }
         return userService.getUser(id)
                 .orElseThrow(() -> new ru.yandex.practicum.filmorate.exception.NotFoundException(
                         "Пользователь с ID " + id + " не найден"));
@@ -50,8 +90,8 @@ public class UserController {
 
     @PutMapping("/{id}/friends/{friendId}")
     @ResponseStatus(HttpStatus.OK)
-    public void addFriend(@PathVariable long id, @PathVariable long friendId) {
-        userService.addFriend(id, friendId);
+    public Map<String, FriendshipState> addFriend(@PathVariable long id, @PathVariable long friendId) {
+        return Map.of("state", userService.addFriend(id, friendId));
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
@@ -61,12 +101,50 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getFriends(@PathVariable long id) {
+    public List<?> getFriends(@PathVariable long id, @RequestParam(required = false) String fields,
+                              @RequestParam(defaultValue = "false") boolean mutualCounts) {
+        if (mutualCounts) {
+            if (fields == null) {
+                return userService.getUserFriendsWithMutualCounts(id, UserField.ALL);
+            }
+            Set<UserField> requested = UserField.parse(fields);
+            return userService.getUserFriendsWithMutualCounts(id, requested).stream()
+                    .map(friend -> {
+                        Map<String, Object> projected =
+                                new LinkedHashMap<>(UserField.project(friend.getUser(), requested));
+                        projected.put("mutualFriends", friend.getMutualFriends());
+                        return projected;
+                    })
+                    .collect(Collectors.toList());
+        }
+        if (fields != null) {
+            Set<UserField> requested = UserField.parse(fields);
+            return project(userService.getUserFriends(id, requested), requested);
+        }
         return userService.getUserFriends(id);
     }
 
+    @GetMapping("/{id}/feed")
+    public FeedPage getFeed(@PathVariable long id,
+                            @RequestParam(required = false) Long cursor,
+                            @RequestParam(defaultValue = "20") int limit) {
+        return feedService.getFeed(id, cursor, limit);
+    }
+
+    @GetMapping("/{id}/path/{otherId}")
+    public FriendPath getFriendPath(@PathVariable long id, @PathVariable long otherId,
+                                    @RequestParam(defaultValue = "6") int maxDepth) {
+        return userService.getFriendPath(id, otherId, maxDepth);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<User> getCommonFriends(@PathVariable long id, @PathVariable long otherId) {
         return userService.getCommonFriends(id, otherId);
     }
-}
\ No newline at end of file
+
+    private List<Map<String, Object>> project(Collection<User> users, Set<UserField> fields) {
+        return users.stream()
+                .map(user -> UserField.project(user, fields))
+                .collect(Collectors.toList());
+    }
+}
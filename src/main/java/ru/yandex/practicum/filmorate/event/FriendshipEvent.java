@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.FriendshipState;
+
+import java.time.Instant;
+
+// Публикуется UserService после того, как userId добавил friendId в друзья
+@Data
+@Builder
+public class FriendshipEvent {
+    private long userId;
+    private long friendId;
+    private FriendshipState state;
+    private Instant occurredAt;
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.ImportKind;
+
+// Публикуется BulkImportService после массовой загрузки в обход обычных путей записи,
+// чтобы кэши и производные структуры пересчитали себя
+@Data
+@Builder
+public class ImportFinishedEvent {
+    private ImportKind kind;
+    private long imported;
+}
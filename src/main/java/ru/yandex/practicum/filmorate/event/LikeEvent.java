@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.Set;
+
+// Публикуется FilmService после того, как лайк поставлен (liked = true) или снят,
+// и ChangeLogPoller для лайков, поставленных через другой экземпляр (remote = true)
+@Data
+@Builder
+public class LikeEvent {
+    private long filmId;
+    private long userId;
+    private boolean liked;
+    private Instant occurredAt;
+    // Жанры фильма на момент лайка, чтобы подписчикам не читать фильм заново
+    private Set<Integer> genreIds;
+    private boolean remote;
+}
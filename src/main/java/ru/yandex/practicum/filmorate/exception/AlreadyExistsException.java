@@ -3,7 +3,7 @@ package ru.yandex.practicum.filmorate.exception;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-public class AlreadyExistsException extends RuntimeException {
+public class AlreadyExistsException extends DomainException {
     public AlreadyExistsException(String message) {
         super(message);
     }
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.exception;
+
+// Ожидаемый исход бизнес-операции (нет объекта, повторный лайк и т.п.), а не сбой:
+// стек не заполняется, поэтому такое исключение стоит почти как обычный возврат
+public abstract class DomainException extends RuntimeException {
+    protected DomainException(String message) {
+        super(message, null, false, false);
+    }
+}
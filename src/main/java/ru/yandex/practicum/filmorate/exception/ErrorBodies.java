@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.exception;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Готовые JSON-тела ошибок вида {"заголовок":"сообщение"}: повторяющиеся ошибки не собирают Map
+// и не проходят через Jackson. Число закэшированных тел ограничено, остальные собираются на лету.
+final class ErrorBodies {
+    static final int MAX_ENTRIES = 1024;
+
+    private final Map<String, Map<String, byte[]>> bodies = new ConcurrentHashMap<>();
+
+    byte[] get(String title, String message) {
+        String safeMessage = message == null ? "" : message;
+        Map<String, byte[]> byMessage = bodies.computeIfAbsent(title, key -> new ConcurrentHashMap<>());
+        byte[] body = byMessage.get(safeMessage);
+        if (body != null) return body;
+
+        body = render(title, safeMessage);
+        if (byMessage.size() < MAX_ENTRIES) {
+            byMessage.putIfAbsent(safeMessage, body);
+        }
+        return body;
+    }
+
+    private static byte[] render(String title, String message) {
+        return ("{\"" + escape(title) + "\":\"" + escape(message) + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
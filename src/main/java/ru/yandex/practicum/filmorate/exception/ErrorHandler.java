@@ -2,11 +2,14 @@ package ru.yandex.practicum.filmorate.exception;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import jakarta.validation.ConstraintViolationException;
@@ -18,25 +21,40 @@ import java.util.Objects;
 @Slf4j
 public class ErrorHandler {
 
+    // Доменные ошибки - ожидаемый поток (повторный лайк, нет друга): готовое тело и ограниченный лог
+    private static final int DOMAIN_LOG_LIMIT_PER_SECOND = 20;
+
+    private final ErrorBodies errorBodies = new ErrorBodies();
+    private final RateLimitedLog validationLog = new RateLimitedLog(DOMAIN_LOG_LIMIT_PER_SECOND);
+    private final RateLimitedLog notFoundLog = new RateLimitedLog(DOMAIN_LOG_LIMIT_PER_SECOND);
+    private final RateLimitedLog conflictLog = new RateLimitedLog(DOMAIN_LOG_LIMIT_PER_SECOND);
+
     @ExceptionHandler(ValidationException.class)
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public Map handleValidationException(final ValidationException e) {
-        log.warn("Ошибка валидации: {}", e.getMessage());
-        return Map.of("Ошибка валидации", e.getMessage());
+    public ResponseEntity<byte[]> handleValidationException(final ValidationException e) {
+        return domainError(HttpStatus.BAD_REQUEST, "Ошибка валидации", e, validationLog);
     }
 
     @ExceptionHandler(NotFoundException.class)
-    @ResponseStatus(HttpStatus.NOT_FOUND)
-    public Map handleNotFoundException(final NotFoundException e) {
-        log.warn("Объект не найден: {}", e.getMessage());
-        return Map.of("Объект не найден", e.getMessage());
+    public ResponseEntity<byte[]> handleNotFoundException(final NotFoundException e) {
+        return domainError(HttpStatus.NOT_FOUND, "Объект не найден", e, notFoundLog);
     }
 
     @ExceptionHandler(AlreadyExistsException.class)
-    @ResponseStatus(HttpStatus.CONFLICT)
-    public Map handleAlreadyExistsException(final AlreadyExistsException e) {
-        log.warn("Конфликт данных: {}", e.getMessage());
-        return Map.of("Конфликт данных", e.getMessage());
+    public ResponseEntity<byte[]> handleAlreadyExistsException(final AlreadyExistsException e) {
+        return domainError(HttpStatus.CONFLICT, "Конфликт данных", e, conflictLog);
+    }
+
+    private ResponseEntity<byte[]> domainError(HttpStatus status, String title, DomainException e,
+                                               RateLimitedLog rateLimitedLog) {
+        int suppressed = rateLimitedLog.tryAcquire();
+        if (suppressed == 0) {
+            log.warn("{}: {}", title, e.getMessage());
+        } else if (suppressed > 0) {
+            log.warn("{}: {} (ещё {} подобных сообщений пропущено)", title, e.getMessage(), suppressed);
+        }
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(errorBodies.get(title, e.getMessage()));
     }
 
     @ExceptionHandler(IllegalArgumentException.class)
@@ -78,6 +96,13 @@ public class ErrorHandler {
         return Map.of("Некорректный формат JSON", "Проверьте правильность структуры запроса");
     }
 
+    // Истекло или оборвалось долгое соединение (поток /films/stream) - ответ уже начат, тело не пишем
+    @ExceptionHandler(AsyncRequestTimeoutException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void handleAsyncRequestTimeoutException(final AsyncRequestTimeoutException e) {
+        log.debug("Асинхронный запрос завершён по таймауту");
+    }
+
     @ExceptionHandler(Throwable.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map handleException(final Exception e) {
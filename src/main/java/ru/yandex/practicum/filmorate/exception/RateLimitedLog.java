@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.exception;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Пропускает не больше limit записей в секунду; остальные считает, чтобы сообщить о них в следующей записи
+public final class RateLimitedLog {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private final int limit;
+    private final AtomicLong windowStart;
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    public RateLimitedLog(int limit) {
+        this(limit, System.nanoTime());
+    }
+
+    RateLimitedLog(int limit, long now) {
+        this.limit = limit;
+        this.windowStart = new AtomicLong(now);
+    }
+
+    // -1 - запись подавлена, иначе сколько записей подавлено с прошлой
+    public int tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    int tryAcquire(long now) {
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            written.set(0);
+        }
+        if (written.incrementAndGet() > limit) {
+            suppressed.incrementAndGet();
+            return -1;
+        }
+        return suppressed.getAndSet(0);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.graph;
+
+import java.util.Arrays;
+
+// Неизменяемый ориентированный граф дружбы в формате CSR: вершины - индексы в отсортированном массиве id,
+// соседи вершины v лежат в targets[offsets[v]..offsets[v + 1]). Для поиска от цели хранится и обратный граф.
+final class CsrGraph {
+    static final CsrGraph EMPTY = build(new long[0], new long[0], 0);
+
+    private final long[] ids;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] reverseOffsets;
+    private final int[] reverseTargets;
+
+    private CsrGraph(long[] ids, int[] offsets, int[] targets, int[] reverseOffsets, int[] reverseTargets) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.reverseOffsets = reverseOffsets;
+        this.reverseTargets = reverseTargets;
+    }
+
+    // Рёбра from[i] -> to[i] для i < edgeCount
+    static CsrGraph build(long[] from, long[] to, int edgeCount) {
+        long[] ids = new long[edgeCount * 2];
+        System.arraycopy(from, 0, ids, 0, edgeCount);
+        System.arraycopy(to, 0, ids, edgeCount, edgeCount);
+        Arrays.sort(ids);
+        int unique = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        ids = Arrays.copyOf(ids, unique);
+
+        int[] sources = new int[edgeCount];
+        int[] destinations = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            sources[i] = Arrays.binarySearch(ids, from[i]);
+            destinations[i] = Arrays.binarySearch(ids, to[i]);
+        }
+        int[] offsets = new int[unique + 1];
+        int[] targets = new int[edgeCount];
+        fill(sources, destinations, offsets, targets);
+        int[] reverseOffsets = new int[unique + 1];
+        int[] reverseTargets = new int[edgeCount];
+        fill(destinations, sources, reverseOffsets, reverseTargets);
+        return new CsrGraph(ids, offsets, targets, reverseOffsets, reverseTargets);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    int edgeCount() {
+        return targets.length;
+    }
+
+    // Индекс вершины или -1, если у пользователя нет ни одной дружбы
+    int indexOf(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 ? index : -1;
+    }
+
+    long idOf(int index) {
+        return ids[index];
+    }
+
+    int[] offsets(boolean reverse) {
+        return reverse ? reverseOffsets : offsets;
+    }
+
+    int[] targets(boolean reverse) {
+        return reverse ? reverseTargets : targets;
+    }
+
+    // Сортировка подсчётом по вершине-источнику
+    private static void fill(int[] sources, int[] destinations, int[] offsets, int[] targets) {
+        for (int source : sources) {
+            offsets[source + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0; i < sources.length; i++) {
+            targets[next[sources[i]]++] = destinations[i];
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.graph;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.ImportFinishedEvent;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendPath;
+import ru.yandex.practicum.filmorate.model.ImportKind;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Граф подтверждённых дружб в памяти для поиска цепочек между пользователями (GET /users/{id}/path/{otherId}).
+// Снимок неизменяемый; после изменений дружбы он пересобирается в фоне не чаще раза в rebuild-ms,
+// поэтому только что добавленная или удалённая дружба может сказаться на пути с этой задержкой.
+// Поиск ограничен числом просмотренных рёбер, чтобы запрос между далёкими частями графа не занял всё время.
+// Рабочие массивы поиска размером с граф берутся из небольшого пула на search-pool-size экземпляров, а не
+// заводятся на каждый поток запросов: сверх пула поиск получает временный экземпляр, который не сохраняется.
+@Component
+@Slf4j
+public class FriendGraph {
+    private final UserStorage userStorage;
+    private final int maxExpansions;
+    private final BlockingQueue<PathSearch> searches;
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+
+    private volatile CsrGraph graph = CsrGraph.EMPTY;
+
+    public FriendGraph(UserStorage userStorage,
+                       @Value("${filmorate.graph.max-expansions:200000}") int maxExpansions,
+                       @Value("${filmorate.graph.search-pool-size:8}") int searchPoolSize) {
+        this.userStorage = userStorage;
+        this.maxExpansions = maxExpansions;
+        this.searches = new ArrayBlockingQueue<>(Math.max(1, searchPoolSize));
+    }
+
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildIfDirty();
+    }
+
+    @EventListener
+    public void onImportFinished(ImportFinishedEvent event) {
+        if (event.getKind() == ImportKind.FRIENDS) {
+            markDirty();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.graph.rebuild-ms:1000}")
+    public void rebuildIfDirty() {
+        if (!dirty.getAndSet(false)) return;
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            dirty.set(true);
+            log.warn("Не удалось пересобрать граф дружбы: {}", e.getMessage());
+        }
+    }
+
+    public FriendPath findPath(long userId, long otherId, int maxDepth) {
+        CsrGraph current = graph;
+        int source = current.indexOf(userId);
+        int target = current.indexOf(otherId);
+        if (userId != otherId && (source < 0 || target < 0)) {
+            throw new NotFoundException("Цепочка дружбы между пользователями не найдена");
+        }
+        if (userId == otherId) {
+            return FriendPath.builder().userIds(List.of(userId)).degrees(0).build();
+        }
+
+        PathSearch search = searches.poll();
+        if (search == null) {
+            search = new PathSearch();
+        }
+        int[] path;
+        boolean budgetExceeded;
+        try {
+            path = search.find(current, source, target, maxDepth, maxExpansions);
+            budgetExceeded = search.isBudgetExceeded();
+        } finally {
+            searches.offer(search);
+        }
+        if (path.length == 0) {
+            throw new NotFoundException(budgetExceeded
+                    ? "Цепочка дружбы не найдена в пределах допустимого поиска"
+                    : "Цепочка дружбы длиной до " + maxDepth + " не найдена");
+        }
+        List<Long> userIds = new ArrayList<>(path.length);
+        for (int vertex : path) {
+            userIds.add(current.idOf(vertex));
+        }
+        return FriendPath.builder().userIds(userIds).degrees(path.length - 1).build();
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        long[][] edges = {new long[1024], new long[1024]};
+        int[] count = new int[1];
+        userStorage.forEachFriendship((userId, friendId) -> {
+            if (count[0] == edges[0].length) {
+                edges[0] = Arrays.copyOf(edges[0], count[0] * 2);
+                edges[1] = Arrays.copyOf(edges[1], count[0] * 2);
+            }
+            edges[0][count[0]] = userId;
+            edges[1][count[0]] = friendId;
+            count[0]++;
+        });
+        CsrGraph rebuilt = CsrGraph.build(edges[0], edges[1], count[0]);
+        graph = rebuilt;
+        log.debug("Граф дружбы пересобран: вершин {}, рёбер {}, за {} мс", rebuilt.size(), rebuilt.edgeCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+}
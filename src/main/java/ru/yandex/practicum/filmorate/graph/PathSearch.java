@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.graph;
+
+import java.util.Arrays;
+
+// Двунаправленный поиск в ширину по CsrGraph: от источника по прямым рёбрам, от цели по обратным,
+// каждый раз раскрывается целый уровень меньшего фронта. Массивы живут в экземпляре и переиспользуются
+// между запросами; очищаются только битовые множества посещённых вершин. Экземпляр не потокобезопасен:
+// FriendGraph выдаёт его из пула одному запросу за раз.
+final class PathSearch {
+    static final int[] NOT_FOUND = new int[0];
+
+    private long[] forwardSeen = new long[0];
+    private long[] backwardSeen = new long[0];
+    private int[] forwardParent = new int[0];
+    private int[] backwardParent = new int[0];
+    private int[] forwardDepth = new int[0];
+    private int[] backwardDepth = new int[0];
+    private int[] forwardQueue = new int[0];
+    private int[] backwardQueue = new int[0];
+    private boolean budgetExceeded;
+
+    // Путь из индексов вершин, NOT_FOUND, если пути не длиннее maxDepth нет или исчерпан бюджет рёбер
+    int[] find(CsrGraph graph, int source, int target, int maxDepth, int maxExpansions) {
+        budgetExceeded = false;
+        if (source == target) return new int[]{source};
+
+        prepare(graph.size());
+        visit(forwardSeen, forwardParent, forwardDepth, source, -1, 0);
+        visit(backwardSeen, backwardParent, backwardDepth, target, -1, 0);
+        forwardQueue[0] = source;
+        backwardQueue[0] = target;
+        int forwardStart = 0;
+        int forwardEnd = 1;
+        int backwardStart = 0;
+        int backwardEnd = 1;
+        int forwardLevel = 0;
+        int backwardLevel = 0;
+        int expansions = 0;
+
+        while (forwardLevel + backwardLevel < maxDepth) {
+            boolean forward = forwardEnd - forwardStart <= backwardEnd - backwardStart;
+            int start = forward ? forwardStart : backwardStart;
+            int end = forward ? forwardEnd : backwardEnd;
+            if (start == end) return NOT_FOUND;
+
+            long[] seen = forward ? forwardSeen : backwardSeen;
+            long[] otherSeen = forward ? backwardSeen : forwardSeen;
+            int[] parent = forward ? forwardParent : backwardParent;
+            int[] depth = forward ? forwardDepth : backwardDepth;
+            int[] otherDepth = forward ? backwardDepth : forwardDepth;
+            int[] queue = forward ? forwardQueue : backwardQueue;
+            int[] offsets = graph.offsets(!forward);
+            int[] targets = graph.targets(!forward);
+            int nextDepth = (forward ? forwardLevel : backwardLevel) + 1;
+
+            int tail = end;
+            int meeting = -1;
+            int best = Integer.MAX_VALUE;
+            for (int i = start; i < end; i++) {
+                int vertex = queue[i];
+                for (int edge = offsets[vertex]; edge < offsets[vertex + 1]; edge++) {
+                    if (++expansions > maxExpansions) {
+                        budgetExceeded = true;
+                        return NOT_FOUND;
+                    }
+                    int next = targets[edge];
+                    if (isSet(seen, next)) continue;
+                    visit(seen, parent, depth, next, vertex, nextDepth);
+                    queue[tail++] = next;
+                    // Кратчайшим будет лучший стык за весь уровень, а не первый найденный
+                    if (isSet(otherSeen, next) && nextDepth + otherDepth[next] < best) {
+                        best = nextDepth + otherDepth[next];
+                        meeting = next;
+                    }
+                }
+            }
+
+            if (forward) {
+                forwardStart = end;
+                forwardEnd = tail;
+                forwardLevel = nextDepth;
+            } else {
+                backwardStart = end;
+                backwardEnd = tail;
+                backwardLevel = nextDepth;
+            }
+            if (meeting >= 0) return path(meeting, best);
+        }
+        return NOT_FOUND;
+    }
+
+    boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    private int[] path(int meeting, int length) {
+        int[] path = new int[length + 1];
+        int position = forwardDepth[meeting];
+        for (int vertex = meeting; vertex >= 0; vertex = forwardParent[vertex]) {
+            path[position--] = vertex;
+        }
+        position = forwardDepth[meeting];
+        for (int vertex = backwardParent[meeting]; vertex >= 0; vertex = backwardParent[vertex]) {
+            path[++position] = vertex;
+        }
+        return path;
+    }
+
+    private void prepare(int size) {
+        int words = (size + 63) >>> 6;
+        if (forwardParent.length < size) {
+            int capacity = Math.max(size, forwardParent.length * 2);
+            forwardSeen = new long[(capacity + 63) >>> 6];
+            backwardSeen = new long[(capacity + 63) >>> 6];
+            forwardParent = new int[capacity];
+            backwardParent = new int[capacity];
+            forwardDepth = new int[capacity];
+            backwardDepth = new int[capacity];
+            forwardQueue = new int[capacity];
+            backwardQueue = new int[capacity];
+        } else {
+            Arrays.fill(forwardSeen, 0, words, 0L);
+            Arrays.fill(backwardSeen, 0, words, 0L);
+        }
+    }
+
+    private static void visit(long[] seen, int[] parent, int[] depth, int vertex, int from, int level) {
+        seen[vertex >>> 6] |= 1L << vertex;
+        parent[vertex] = from;
+        depth[vertex] = level;
+    }
+
+    private static boolean isSet(long[] seen, int vertex) {
+        return (seen[vertex >>> 6] & 1L << vertex) != 0;
+    }
+}
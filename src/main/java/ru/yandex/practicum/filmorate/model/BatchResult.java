@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// Ответ пакетного запроса по списку id: найденные объекты в порядке запроса и id, которых нет
+@Data
+@Builder
+public class BatchResult<T> {
+    private List<T> items;
+    private List<Long> missingIds;
+}
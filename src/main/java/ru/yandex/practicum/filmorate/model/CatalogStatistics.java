@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.Map;
+
+// Ключи распределений - id жанров и рейтингов MPA
+@Data
+@Builder
+public class CatalogStatistics {
+    private long films;
+    private double averageDuration;
+    private long likes;
+    private Map<Integer, Long> filmsByGenre;
+    private Map<Integer, Long> filmsByMpa;
+    private Map<Integer, Long> likesByGenre;
+    private Instant reconciledAt;
+}
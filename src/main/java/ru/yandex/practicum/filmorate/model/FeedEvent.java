@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class FeedEvent {
+    private long id;
+    private long userId;
+    private FeedEventType type;
+    private long entityId;
+    private Instant timestamp;
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+// LIKE - друг лайкнул фильм entityId, FRIEND - друг добавил в друзья пользователя entityId
+public enum FeedEventType {
+    LIKE,
+    FRIEND
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// nextCursor передаётся в следующий запрос как cursor; null - событий дальше нет
+@Data
+@Builder
+public class FeedPage {
+    private List<FeedEvent> events;
+    private Long nextCursor;
+}
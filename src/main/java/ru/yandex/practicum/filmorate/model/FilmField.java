@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Поля фильма, которые можно запросить параметром ?fields=
+@Getter
+@RequiredArgsConstructor
+public enum FilmField {
+    ID("id", Film::getId),
+    NAME("name", Film::getName),
+    DESCRIPTION("description", Film::getDescription),
+    RELEASE_DATE("releaseDate", Film::getReleaseDate),
+    DURATION("duration", Film::getDuration),
+    GENRES("genres", Film::getGenres),
+    MPA("mpa", Film::getMpa);
+
+    public static final Set<FilmField> ALL = Collections.unmodifiableSet(EnumSet.allOf(FilmField.class));
+
+    private final String jsonName;
+    private final Function<Film, Object> getter;
+
+    // id возвращается всегда, неизвестное поле - ошибка запроса
+    public static Set<FilmField> parse(String fields) {
+        Set<FilmField> result = EnumSet.of(ID);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) continue;
+            result.add(Arrays.stream(values())
+                    .filter(field -> field.jsonName.equals(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new ValidationException("Неизвестное поле фильма: " + trimmed)));
+        }
+        return result;
+    }
+
+    public static Map<String, Object> project(Film film, Set<FilmField> fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (FilmField field : fields) {
+            result.put(field.jsonName, field.getter.apply(film));
+        }
+        return result;
+    }
+}
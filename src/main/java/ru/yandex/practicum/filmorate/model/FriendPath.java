@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// Цепочка дружбы от первого пользователя до второго включительно; degrees - число рукопожатий
+@Data
+@Builder
+public class FriendPath {
+    private List<Long> userIds;
+    private int degrees;
+}
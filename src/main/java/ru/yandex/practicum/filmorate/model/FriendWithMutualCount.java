@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Builder;
+import lombok.Data;
+
+// Друг пользователя с числом их общих друзей; в JSON поля пользователя идут на верхнем уровне
+@Data
+@Builder
+public class FriendWithMutualCount {
+    @JsonUnwrapped
+    private User user;
+    private int mutualFriends;
+}
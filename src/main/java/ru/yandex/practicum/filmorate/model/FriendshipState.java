@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+// Состояние дружбы после запроса: REQUESTED - добавил только один, CONFIRMED - оба
+public enum FriendshipState {
+    REQUESTED,
+    CONFIRMED
+}
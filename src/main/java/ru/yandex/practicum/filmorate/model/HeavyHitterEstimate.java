@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Оценка числа лайков фильма за день: не меньше истинной и с вероятностью confidence
+// превышает её не больше чем на maxOverestimate
+@Data
+@Builder
+public class HeavyHitterEstimate {
+    private long filmId;
+    private long likes;
+    private long maxOverestimate;
+    private double confidence;
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Arrays;
+
+// Что загружается через POST /admin/import/{kind}: одна строка NDJSON - один объект этого вида
+@Getter
+public enum ImportKind {
+    FILMS("films"),
+    USERS("users"),
+    LIKES("likes"),
+    FRIENDS("friends");
+
+    private final String paramName;
+
+    ImportKind(String paramName) {
+        this.paramName = paramName;
+    }
+
+    public static ImportKind parse(String kind) {
+        return Arrays.stream(values())
+                .filter(value -> value.paramName.equals(kind.trim()))
+                .findFirst()
+                .orElseThrow(() -> new ValidationException("Неизвестный вид импорта: " + kind));
+    }
+}
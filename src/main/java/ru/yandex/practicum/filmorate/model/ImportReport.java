@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// Ход или итог импорта. errors хранит только первые ошибки, failed считает все;
+// abortReason заполнен, если чтение потока оборвалось раньше конца
+@Data
+@Builder
+public class ImportReport {
+    private String id;
+    private ImportKind kind;
+    private boolean finished;
+    private long lines;
+    private long imported;
+    private long failed;
+    private List<ImportLineError> errors;
+    private String abortReason;
+    private long elapsedMs;
+}
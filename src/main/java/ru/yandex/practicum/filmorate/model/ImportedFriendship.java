@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Строка выгрузки дружбы: friendId в подтверждённых друзьях userId
+@Data
+@Builder
+public class ImportedFriendship {
+    private long userId;
+    private long friendId;
+}
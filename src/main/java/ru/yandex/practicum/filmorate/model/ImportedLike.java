@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+// Строка выгрузки лайков; без createdAt лайк получает время загрузки
+@Data
+@Builder
+public class ImportedLike {
+    private long filmId;
+    private long userId;
+    private Instant createdAt;
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// Окна GET /films/trending: число корзин и длина корзины. Вклад лайка вдвое падает за четверть окна
+@Getter
+public enum TrendWindow {
+    HOUR("hour", 60, Duration.ofMinutes(1)),
+    DAY("day", 96, Duration.ofMinutes(15)),
+    WEEK("week", 168, Duration.ofHours(1));
+
+    private final String paramName;
+    private final int buckets;
+    private final long bucketMillis;
+
+    TrendWindow(String paramName, int buckets, Duration bucket) {
+        this.paramName = paramName;
+        this.buckets = buckets;
+        this.bucketMillis = bucket.toMillis();
+    }
+
+    public long getLengthMillis() {
+        return buckets * bucketMillis;
+    }
+
+    public double getHalfLifeBuckets() {
+        return buckets / 4.0;
+    }
+
+    public static TrendWindow parse(String window) {
+        return Arrays.stream(values())
+                .filter(value -> value.paramName.equals(window.trim()))
+                .findFirst()
+                .orElseThrow(() -> new ValidationException("Неизвестное окно трендов: " + window));
+    }
+}
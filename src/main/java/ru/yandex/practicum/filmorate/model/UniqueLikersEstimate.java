@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Оценка числа различных пользователей, лайкнувших фильмы жанра за день, и её относительная стандартная ошибка
+@Data
+@Builder
+public class UniqueLikersEstimate {
+    private int genreId;
+    private long uniqueLikers;
+    private double relativeStandardError;
+}
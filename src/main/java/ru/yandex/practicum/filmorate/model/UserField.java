@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Поля пользователя, которые можно запросить параметром ?fields=
+@Getter
+@RequiredArgsConstructor
+public enum UserField {
+    ID("id", User::getId),
+    EMAIL("email", User::getEmail),
+    LOGIN("login", User::getLogin),
+    NAME("name", User::getName),
+    BIRTHDAY("birthday", User::getBirthday);
+
+    public static final Set<UserField> ALL = Collections.unmodifiableSet(EnumSet.allOf(UserField.class));
+
+    private final String jsonName;
+    private final Function<User, Object> getter;
+
+    // id возвращается всегда, неизвестное поле - ошибка запроса
+    public static Set<UserField> parse(String fields) {
+        Set<UserField> result = EnumSet.of(ID);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) continue;
+            result.add(Arrays.stream(values())
+                    .filter(field -> field.jsonName.equals(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new ValidationException("Неизвестное поле пользователя: " + trimmed)));
+        }
+        return result;
+    }
+
+    public static Map<String, Object> project(User user, Set<UserField> fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (UserField field : fields) {
+            result.put(field.jsonName, field.getter.apply(user));
+        }
+        return result;
+    }
+}
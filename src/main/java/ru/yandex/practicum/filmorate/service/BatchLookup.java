@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Раскладывает результат пакетной загрузки в порядке запрошенных id и собирает ненайденные
+final class BatchLookup {
+    static final int MAX_IDS = 1000;
+
+    private BatchLookup() {
+    }
+
+    static <T> BatchResult<T> load(List<Long> ids, Function<Collection<Long>, Map<Long, T>> loader) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.size() > MAX_IDS) {
+            throw new ValidationException("За один запрос можно получить не больше " + MAX_IDS + " объектов");
+        }
+
+        Map<Long, T> found = uniqueIds.isEmpty() ? Map.of() : loader.apply(uniqueIds);
+        List<T> items = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : uniqueIds) {
+            T item = found.get(id);
+            if (item != null) {
+                items.add(item);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return BatchResult.<T>builder()
+                .items(items)
+                .missingIds(missingIds)
+                .build();
+    }
+}
@@ -0,0 +1,379 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.ImportFinishedEvent;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.bulk.BulkImportStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.validation.ModelValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Массовая загрузка выгрузок NDJSON (POST /admin/import/{kind}).
+// Поток запроса читает тело построчно, разбирает и проверяет строки и складывает их в пачки;
+// отдельный поток пишет пачки в базу. Очередь между ними ограничена queue-batches пачками,
+// так что при медленной записи чтение тела останавливается, а в памяти не больше queue-batches * batch-size строк.
+// Строка длиннее max-line-length символов в память не собирается: она пропускается до перевода строки и
+// попадает в отчёт как ошибка, так что огромная строка или тело без переводов строк не займут всю кучу.
+// Пачка пишется одной транзакцией; если она не прошла, её строки пишутся по одной, чтобы найти виноватые.
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class BulkImportService {
+    private static final long PROGRESS_LOG_LINES = 100_000;
+
+    private final ObjectMapper objectMapper;
+    private final BulkImportStorage importStorage;
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int queueBatches;
+    private final int maxErrors;
+    private final int maxLineLength;
+
+    private final Map<String, ImportJob> running = new ConcurrentHashMap<>();
+
+    public BulkImportService(ObjectMapper objectMapper, BulkImportStorage importStorage,
+                             MpaStorage mpaStorage, GenreStorage genreStorage,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${filmorate.import.batch-size:500}") int batchSize,
+                             @Value("${filmorate.import.queue-batches:4}") int queueBatches,
+                             @Value("${filmorate.import.max-errors:100}") int maxErrors,
+                             @Value("${filmorate.import.max-line-length:65536}") int maxLineLength) {
+        this.objectMapper = objectMapper;
+        this.importStorage = importStorage;
+        this.mpaStorage = mpaStorage;
+        this.genreStorage = genreStorage;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = Math.max(1, batchSize);
+        this.queueBatches = Math.max(1, queueBatches);
+        this.maxErrors = maxErrors;
+        this.maxLineLength = Math.max(1, maxLineLength);
+    }
+
+    public ImportReport importNdjson(ImportKind kind, InputStream body) {
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), kind);
+        running.put(job.id, job);
+        try {
+            switch (kind) {
+                case FILMS -> importFilms(job, body);
+                case USERS -> run(job, body, User.class, ModelValidator::validateUser, importStorage::insertUsers);
+                case LIKES -> run(job, body, ImportedLike.class, this::validateLike, importStorage::insertLikes);
+                case FRIENDS -> run(job, body, ImportedFriendship.class, this::validateFriendship,
+                        importStorage::insertFriendships);
+            }
+            importStorage.completeImport(kind);
+            eventPublisher.publishEvent(ImportFinishedEvent.builder()
+                    .kind(kind)
+                    .imported(job.imported.get())
+                    .build());
+            ImportReport report = job.report(true);
+            log.info("Импорт {} завершён: строк {}, загружено {}, ошибок {}, за {} мс", kind, report.getLines(),
+                    report.getImported(), report.getFailed(), report.getElapsedMs());
+            return report;
+        } finally {
+            running.remove(job.id);
+        }
+    }
+
+    public List<ImportReport> getRunningImports() {
+        return running.values().stream()
+                .map(job -> job.report(false))
+                .toList();
+    }
+
+    // Справочники читаются один раз на импорт, а не на каждую строку
+    private void importFilms(ImportJob job, InputStream body) {
+        Set<Integer> mpaIds = mpaStorage.findAllMpa().stream().map(Mpa::getId).collect(Collectors.toSet());
+        Set<Integer> genreIds = genreStorage.findAllGenres().stream().map(Genre::getId).collect(Collectors.toSet());
+        run(job, body, Film.class, film -> validateFilm(film, mpaIds, genreIds), importStorage::insertFilms);
+    }
+
+    private <T> void run(ImportJob job, InputStream body, Class<T> type, Consumer<T> validator,
+                         Consumer<List<T>> writer) {
+        ObjectReader reader = objectMapper.readerFor(type);
+        BlockingQueue<List<Line<T>>> queue = new ArrayBlockingQueue<>(queueBatches);
+        Thread writerThread = new Thread(() -> writeLoop(job, queue, writer),
+                "ndjson-import-" + job.kind.getParamName());
+        writerThread.start();
+
+        List<Line<T>> batch = new ArrayList<>(batchSize);
+        try (BoundedLineReader lines = new BoundedLineReader(
+                new InputStreamReader(body, StandardCharsets.UTF_8), maxLineLength)) {
+            long number = 0;
+            for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                number++;
+                if (line.isBlank() && !lines.isTruncated()) continue;
+                if (job.lines.incrementAndGet() % PROGRESS_LOG_LINES == 0) {
+                    log.info("Импорт {}: прочитано строк {}, загружено {}, ошибок {}", job.kind, job.lines.get(),
+                            job.imported.get(), job.failed.get());
+                }
+                if (lines.isTruncated()) {
+                    job.fail(number, "Строка длиннее " + maxLineLength + " символов");
+                    continue;
+                }
+                T value;
+                try {
+                    value = reader.readValue(line);
+                    validator.accept(value);
+                } catch (IOException | RuntimeException e) {
+                    job.fail(number, describe(e));
+                    continue;
+                }
+                batch.add(new Line<>(number, value));
+                if (batch.size() == batchSize) {
+                    put(queue, batch, writerThread);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (IOException e) {
+            job.abortReason = "Чтение тела запроса прервано: " + e.getMessage();
+            log.warn("Импорт {} прерван: {}", job.kind, e.getMessage());
+        } finally {
+            if (!batch.isEmpty()) {
+                put(queue, batch, writerThread);
+            }
+            // Пустая пачка - знак конца потока для записи
+            put(queue, List.of(), writerThread);
+            join(writerThread);
+        }
+    }
+
+    private <T> void writeLoop(ImportJob job, BlockingQueue<List<Line<T>>> queue, Consumer<List<T>> writer) {
+        try {
+            for (List<Line<T>> batch = queue.take(); !batch.isEmpty(); batch = queue.take()) {
+                write(job, batch, writer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> void write(ImportJob job, List<Line<T>> batch, Consumer<List<T>> writer) {
+        try {
+            writer.accept(batch.stream().map(Line::value).toList());
+            job.imported.addAndGet(batch.size());
+            return;
+        } catch (RuntimeException e) {
+            log.debug("Пачка импорта {} из {} строк не записана, пишем по одной: {}", job.kind, batch.size(),
+                    e.getMessage());
+        }
+        for (Line<T> line : batch) {
+            try {
+                writer.accept(List.of(line.value()));
+                job.imported.incrementAndGet();
+            } catch (RuntimeException e) {
+                job.fail(line.number(), describe(e));
+            }
+        }
+    }
+
+    // Ждём место в очереди, пока поток записи жив: это и есть обратное давление на чтение тела
+    private <T> void put(BlockingQueue<List<Line<T>>> queue, List<Line<T>> batch, Thread writerThread) {
+        try {
+            while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+                if (!writerThread.isAlive()) {
+                    throw new IllegalStateException("Поток записи импорта остановился");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Импорт прерван");
+        }
+    }
+
+    private void join(Thread writerThread) {
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Импорт прерван");
+        }
+    }
+
+    private String describe(Exception e) {
+        if (e instanceof JsonProcessingException json) {
+            return "Некорректный JSON: " + json.getOriginalMessage();
+        }
+        if (e instanceof DataAccessException data) {
+            return "Ошибка записи: " + data.getMostSpecificCause().getMessage();
+        }
+        return e.getMessage();
+    }
+
+    // Общие правила - те же, что у хранилищ; справочники сверяются с прочитанными в начале импорта
+    private void validateFilm(Film film, Set<Integer> mpaIds, Set<Integer> genreIds) {
+        ModelValidator.validateFilm(film);
+        if (!mpaIds.contains(film.getMpa().getId())) {
+            throw new ValidationException("Возрастной рейтинг с id " + film.getMpa().getId() + " не найден!");
+        }
+        if (film.getGenres() != null) {
+            film.getGenres().removeIf(Objects::isNull);
+            for (Genre genre : film.getGenres()) {
+                if (!genreIds.contains(genre.getId())) {
+                    throw new ValidationException("Жанр с id " + genre.getId() + " не найден!");
+                }
+            }
+        }
+    }
+
+    private void validateLike(ImportedLike like) {
+        if (like.getFilmId() <= 0 || like.getUserId() <= 0) {
+            throw new ValidationException("У лайка должны быть filmId и userId");
+        }
+    }
+
+    private void validateFriendship(ImportedFriendship friendship) {
+        if (friendship.getUserId() <= 0 || friendship.getFriendId() <= 0) {
+            throw new ValidationException("У дружбы должны быть userId и friendId");
+        }
+        if (friendship.getUserId() == friendship.getFriendId()) {
+            throw new ValidationException("Нельзя добавить самого себя в друзья!");
+        }
+    }
+
+    private record Line<T>(long number, T value) {
+    }
+
+    // Построчное чтение с ограничением длины строки. В отличие от BufferedReader.readLine, хвост слишком длинной
+    // строки не копится, а пропускается до перевода строки; такая строка возвращается пустой с признаком isTruncated
+    private static final class BoundedLineReader implements AutoCloseable {
+        private final Reader in;
+        private final int maxLength;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean truncated;
+
+        private BoundedLineReader(Reader in, int maxLength) {
+            this.in = in;
+            this.maxLength = maxLength;
+        }
+
+        // null - тело закончилось
+        private String readLine() throws IOException {
+            line.setLength(0);
+            truncated = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return read ? finish() : null;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                if (!truncated) {
+                    int length = position - start;
+                    if (line.length() + length > maxLength + 1) {
+                        // +1 - место под \r перед \n
+                        truncated = true;
+                        line.setLength(0);
+                    } else {
+                        line.append(buffer, start, length);
+                    }
+                }
+                if (position < limit) {
+                    position++;
+                    return finish();
+                }
+            }
+        }
+
+        private String finish() {
+            if (truncated) return "";
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(--length);
+            }
+            if (length > maxLength) {
+                truncated = true;
+                return "";
+            }
+            return line.toString();
+        }
+
+        private boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private final class ImportJob {
+        private final String id;
+        private final ImportKind kind;
+        private final long startedNanos = System.nanoTime();
+        private final AtomicLong lines = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final List<ImportLineError> errors = Collections.synchronizedList(new ArrayList<>());
+        private volatile String abortReason;
+
+        private ImportJob(String id, ImportKind kind) {
+            this.id = id;
+            this.kind = kind;
+        }
+
+        private void fail(long line, String message) {
+            failed.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < maxErrors) {
+                    errors.add(ImportLineError.builder().line(line).message(message).build());
+                }
+            }
+        }
+
+        private ImportReport report(boolean finished) {
+            List<ImportLineError> sortedErrors;
+            synchronized (errors) {
+                sortedErrors = new ArrayList<>(errors);
+            }
+            sortedErrors.sort(Comparator.comparingLong(ImportLineError::getLine));
+            return ImportReport.builder()
+                    .id(id)
+                    .kind(kind)
+                    .finished(finished)
+                    .lines(lines.get())
+                    .imported(imported.get())
+                    .failed(failed.get())
+                    .errors(sortedErrors)
+                    .abortReason(abortReason)
+                    .elapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.ImportFinishedEvent;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.model.CatalogStatistics;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportKind;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Статистика каталога для GET /stats, которая ведётся в памяти без GROUP BY на каждый запрос.
+// На каждый фильм хранится короткая запись (MPA, длительность, жанры, лайки), а агрегаты меняются на разницу
+// между старой и новой записью при сохранении и удалении фильма и при лайках.
+// Лайки, удалённые вместе с пользователями, и прочий дрейф исправляет периодическая сверка с хранилищем.
+// Фильмы, изменившиеся во время сверки, сохраняют инкрементальные значения до следующей сверки.
+@Service
+@Slf4j
+public class CatalogStats {
+    private final FilmStorage filmStorage;
+
+    private final Map<Long, FilmRecord> films = new HashMap<>();
+    private final Map<Integer, Long> filmsByGenre = new HashMap<>();
+    private final Map<Integer, Long> filmsByMpa = new HashMap<>();
+    private final Map<Integer, Long> likesByGenre = new HashMap<>();
+    private final Set<Long> touchedDuringReconcile = ConcurrentHashMap.newKeySet();
+    private long durationSum;
+    private long likes;
+    private boolean reconciling;
+    private Instant reconciledAt;
+
+    public CatalogStats(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    public synchronized void filmSaved(Film film) {
+        FilmRecord previous = films.get(film.getId());
+        FilmRecord current = FilmRecord.of(film, previous == null ? 0 : previous.likes);
+        replace(film.getId(), previous, current);
+    }
+
+    public synchronized void filmRemoved(long filmId) {
+        replace(filmId, films.get(filmId), null);
+    }
+
+    @EventListener
+    public synchronized void onLike(LikeEvent event) {
+        FilmRecord previous = films.get(event.getFilmId());
+        if (previous == null) return;
+        replace(event.getFilmId(), previous, previous.withLikes(previous.likes + (event.isLiked() ? 1 : -1)));
+    }
+
+    public synchronized CatalogStatistics getStatistics() {
+        return CatalogStatistics.builder()
+                .films(films.size())
+                .averageDuration(films.isEmpty() ? 0 : (double) durationSum / films.size())
+                .likes(likes)
+                .filmsByGenre(new TreeMap<>(filmsByGenre))
+                .filmsByMpa(new TreeMap<>(filmsByMpa))
+                .likesByGenre(new TreeMap<>(likesByGenre))
+                .reconciledAt(reconciledAt)
+                .build();
+    }
+
+    // Импорт пишет мимо filmSaved и onLike, поэтому после него сверяемся сразу, не дожидаясь расписания
+    @EventListener
+    public void onImportFinished(ImportFinishedEvent event) {
+        if (event.getKind() == ImportKind.FILMS || event.getKind() == ImportKind.LIKES) {
+            reconcile();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reconcile();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.stats.reconcile-ms:300000}",
+            initialDelayString = "${filmorate.stats.reconcile-ms:300000}")
+    public void reconcile() {
+        synchronized (this) {
+            reconciling = true;
+            touchedDuringReconcile.clear();
+        }
+
+        Map<Long, FilmRecord> fresh = new HashMap<>();
+        Map<Long, Integer> likeCounts;
+        try {
+            likeCounts = filmStorage.getLikeCounts();
+            for (Film film : filmStorage.getAllFilms()) {
+                fresh.put(film.getId(), FilmRecord.of(film, likeCounts.getOrDefault(film.getId(), 0)));
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                reconciling = false;
+            }
+            log.warn("Сверка статистики каталога не удалась: {}", e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            reconciling = false;
+            for (long filmId : touchedDuringReconcile) {
+                FilmRecord current = films.get(filmId);
+                if (current == null) {
+                    fresh.remove(filmId);
+                } else {
+                    fresh.put(filmId, current);
+                }
+            }
+            int drift = 0;
+            for (long filmId : union(films.keySet(), fresh.keySet())) {
+                FilmRecord previous = films.get(filmId);
+                FilmRecord current = fresh.get(filmId);
+                if (!Objects.equals(previous, current)) {
+                    replace(filmId, previous, current);
+                    drift++;
+                }
+            }
+            reconciledAt = Instant.now();
+            if (drift > 0) {
+                log.info("Сверка статистики каталога исправила записи {} фильмов", drift);
+            }
+        }
+    }
+
+    private void replace(long filmId, FilmRecord previous, FilmRecord current) {
+        if (previous != null) {
+            apply(previous, -1);
+        }
+        if (current != null) {
+            apply(current, 1);
+            films.put(filmId, current);
+        } else {
+            films.remove(filmId);
+        }
+        if (reconciling) {
+            touchedDuringReconcile.add(filmId);
+        }
+    }
+
+    private void apply(FilmRecord record, int sign) {
+        durationSum += (long) sign * record.duration;
+        likes += (long) sign * record.likes;
+        if (record.mpaId != 0) {
+            add(filmsByMpa, record.mpaId, sign);
+        }
+        for (int genreId : record.genreIds) {
+            add(filmsByGenre, genreId, sign);
+            add(likesByGenre, genreId, (long) sign * record.likes);
+        }
+    }
+
+    private static void add(Map<Integer, Long> counters, int key, long delta) {
+        if (delta == 0) return;
+        counters.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private static Set<Long> union(Set<Long> first, Set<Long> second) {
+        Set<Long> result = new HashSet<>(first);
+        result.addAll(second);
+        return result;
+    }
+
+    private record FilmRecord(int mpaId, int duration, int[] genreIds, int likes) {
+
+        static FilmRecord of(Film film, int likes) {
+            int[] genreIds = film.getGenres() == null ? new int[0]
+                    : film.getGenres().stream().mapToInt(Genre::getId).distinct().sorted().toArray();
+            return new FilmRecord(film.getMpa() == null ? 0 : film.getMpa().getId(), film.getDuration(),
+                    genreIds, likes);
+        }
+
+        FilmRecord withLikes(int likes) {
+            return new FilmRecord(mpaId, duration, genreIds, likes);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FilmRecord record && mpaId == record.mpaId && duration == record.duration
+                    && likes == record.likes && Arrays.equals(genreIds, record.genreIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mpaId, duration, likes, Arrays.hashCode(genreIds));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.ImportFinishedEvent;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.graph.FriendGraph;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportKind;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeLog;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeType;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Применяет к локальным кэшам изменения, сделанные другими экземплярами на общей базе.
+// Читает журнал изменений после курсора раз в poll-ms. Id журнала выдаются при вставке, а видны после commit,
+// поэтому запись с меньшим id может появиться позже большей: пропущенные id запоминаются, и курсор стоит перед
+// первым из них, пока он не появится или не истечёт gap-timeout-ms (id откаченной транзакции не появится никогда).
+// Старые записи удаляются раз в cleanup-ms, хранятся retention-ms.
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class ChangeLogPoller {
+    private final ChangeLog changeLog;
+    private final FilmStorage filmStorage;
+    private final FilmJsonCache filmJsonCache;
+    private final PopularFilmsSnapshot popularFilmsSnapshot;
+    private final CatalogStats catalogStats;
+    private final FriendGraph friendGraph;
+    private final FeedService feedService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final long gapTimeoutNanos;
+    private final long retentionMillis;
+
+    // Id из промежутка (cursor, maxSeen], которых ещё не было, и время, когда их пропуск замечен
+    private final NavigableMap<Long, Long> gaps = new TreeMap<>();
+    private long cursor = -1;
+    private long maxSeen;
+
+    public ChangeLogPoller(ChangeLog changeLog, FilmStorage filmStorage, FilmJsonCache filmJsonCache,
+                           PopularFilmsSnapshot popularFilmsSnapshot, CatalogStats catalogStats,
+                           FriendGraph friendGraph, FeedService feedService,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${filmorate.change-log.batch-size:500}") int batchSize,
+                           @Value("${filmorate.change-log.gap-timeout-ms:5000}") long gapTimeoutMillis,
+                           @Value("${filmorate.change-log.retention-ms:3600000}") long retentionMillis) {
+        this.changeLog = changeLog;
+        this.filmStorage = filmStorage;
+        this.filmJsonCache = filmJsonCache;
+        this.popularFilmsSnapshot = popularFilmsSnapshot;
+        this.catalogStats = catalogStats;
+        this.friendGraph = friendGraph;
+        this.feedService = feedService;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMillis);
+        this.retentionMillis = retentionMillis;
+    }
+
+    // Всё, что записано до старта, уже учтено при загрузке кэшей из базы
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void onApplicationReady() {
+        cursor = changeLog.findMaxId();
+        maxSeen = cursor;
+        log.info("Журнал изменений читается после id={}, экземпляр {}", cursor, changeLog.getNodeId());
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.change-log.poll-ms:200}")
+    public synchronized void poll() {
+        if (cursor < 0) return;
+        long now = System.nanoTime();
+        for (ChangeLog.Entry entry : changeLog.findAfter(cursor, batchSize)) {
+            if (entry.id() > maxSeen) {
+                for (long missing = maxSeen + 1; missing < entry.id(); missing++) {
+                    gaps.put(missing, now);
+                }
+                maxSeen = entry.id();
+            } else if (gaps.remove(entry.id()) == null) {
+                continue;
+            }
+            if (!changeLog.getNodeId().equals(entry.nodeId())) {
+                apply(entry);
+            }
+        }
+
+        gaps.values().removeIf(seenAt -> now - seenAt > gapTimeoutNanos);
+        cursor = gaps.isEmpty() ? maxSeen : gaps.firstKey() - 1;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.change-log.cleanup-ms:60000}",
+            initialDelayString = "${filmorate.change-log.cleanup-ms:60000}")
+    public void cleanup() {
+        int deleted = changeLog.deleteBefore(Instant.now().minusMillis(retentionMillis));
+        if (deleted > 0) {
+            log.debug("Из журнала изменений удалено {} записей", deleted);
+        }
+    }
+
+    private void apply(ChangeLog.Entry entry) {
+        try {
+            switch (entry.type()) {
+                case FILM_SAVED -> {
+                    filmJsonCache.invalidate(entry.entityId());
+                    filmStorage.getFilm(entry.entityId()).ifPresent(catalogStats::filmSaved);
+                    popularFilmsSnapshot.requestRefresh();
+                }
+                case FILM_REMOVED -> {
+                    filmJsonCache.invalidate(entry.entityId());
+                    catalogStats.filmRemoved(entry.entityId());
+                    popularFilmsSnapshot.requestRefresh();
+                }
+                case LIKE_ADDED, LIKE_REMOVED -> publishLike(entry);
+                case USER_REMOVED, FRIENDSHIP_CHANGED -> friendGraph.markDirty();
+                case IMPORT -> eventPublisher.publishEvent(ImportFinishedEvent.builder()
+                        .kind(ImportKind.valueOf(entry.detail()))
+                        .build());
+                case FEED_APPENDED -> feedService.reload(entry.entityId(), entry.relatedId() == 1);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось применить запись журнала изменений id={} ({}): {}",
+                    entry.id(), entry.type(), e.getMessage());
+        }
+    }
+
+    // Подписчики лайков получают то же событие, что и на экземпляре, принявшем лайк
+    private void publishLike(ChangeLog.Entry entry) {
+        Set<Integer> genreIds = filmStorage.getFilm(entry.entityId())
+                .map(Film::getGenres)
+                .map(genres -> genres.stream().map(Genre::getId).collect(Collectors.toSet()))
+                .orElse(Set.of());
+        eventPublisher.publishEvent(LikeEvent.builder()
+                .filmId(entry.entityId())
+                .userId(entry.relatedId())
+                .liked(entry.type() == ChangeType.LIKE_ADDED)
+                .occurredAt(entry.createdAt())
+                .genreIds(genreIds)
+                .remote(true)
+                .build());
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Кольцо последних событий одной ленты, упорядоченных по id. Новое событие вытесняет самое старое.
+// События, ещё не записанные в базу, копятся в pending; сохранённые ранее подгружаются при первом чтении
+// и повторно, если ленту дописал другой экземпляр (id общие, повторно прочитанное событие не задвоится).
+final class FeedRing {
+    private final FeedEvent[] events;
+    private final List<FeedEvent> pending = new ArrayList<>();
+    private int start;
+    private int size;
+    private boolean loaded;
+
+    FeedRing(int capacity) {
+        this.events = new FeedEvent[capacity];
+    }
+
+    synchronized void add(FeedEvent event) {
+        if (insert(event)) {
+            pending.add(event);
+            if (pending.size() > events.length) {
+                pending.remove(0);
+            }
+        }
+    }
+
+    // Не больше limit событий с id меньше beforeId, от новых к старым
+    synchronized List<FeedEvent> page(long beforeId, int limit) {
+        List<FeedEvent> page = new ArrayList<>(Math.min(limit, size));
+        for (int i = size - 1; i >= 0 && page.size() < limit; i--) {
+            FeedEvent event = get(i);
+            if (event.getId() < beforeId) {
+                page.add(event);
+            }
+        }
+        return page;
+    }
+
+    synchronized void loadIfNeeded(Supplier<List<FeedEvent>> persisted) {
+        if (loaded) return;
+        persisted.get().forEach(this::insert);
+        loaded = true;
+    }
+
+    synchronized void markStale() {
+        loaded = false;
+    }
+
+    synchronized List<FeedEvent> drainPending() {
+        List<FeedEvent> drained = new ArrayList<>(pending);
+        pending.clear();
+        return drained;
+    }
+
+    // Запись в базу не удалась: события вернутся в следующую запись
+    synchronized void restorePending(List<FeedEvent> failed) {
+        pending.addAll(0, failed);
+    }
+
+    private boolean insert(FeedEvent event) {
+        int position = size;
+        while (position > 0 && get(position - 1).getId() > event.getId()) {
+            position--;
+        }
+        if (position > 0 && get(position - 1).getId() == event.getId()) return false;
+        if (size == events.length) {
+            // В заполненном кольце событие старше всех уже не нужно
+            if (position == 0) return false;
+            start = (start + 1) % events.length;
+            size--;
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            set(i, get(i - 1));
+        }
+        set(position, event);
+        size++;
+        return true;
+    }
+
+    private FeedEvent get(int index) {
+        return events[(start + index) % events.length];
+    }
+
+    private void set(int index, FeedEvent event) {
+        events[(start + index) % events.length] = event;
+    }
+}
@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.model.FeedPage;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Лента событий друзей (GET /users/{id}/feed), собранная при записи.
+// Лайк или новая дружба раскладываются в кольца входящих лент всех, у кого автор в друзьях.
+// У знаменитостей (больше celebrity-followers подписчиков) событие кладётся только в их исходящее кольцо,
+// а читатель подмешивает исходящие кольца своих друзей-знаменитостей при чтении.
+// Кольца пишутся в базу с запаздыванием по расписанию; сохранённые события подгружаются при первом чтении ленты.
+// Id событий берутся из последовательности в базе, общей для всех экземпляров. Ленту, которую дописал
+// другой экземпляр, читатель журнала изменений помечает для повторной загрузки из базы.
+@Service
+@Slf4j
+public class FeedService implements DisposableBean {
+    private final UserStorage userStorage;
+    private final FeedStorage feedStorage;
+    private final int capacity;
+    private final int celebrityFollowers;
+    private final int maxPageSize;
+
+    private final Map<Long, FeedRing> inboxes = new ConcurrentHashMap<>();
+    private final Map<Long, FeedRing> outboxes = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyInboxes = ConcurrentHashMap.newKeySet();
+    private final Set<Long> dirtyOutboxes = ConcurrentHashMap.newKeySet();
+
+    public FeedService(UserStorage userStorage, FeedStorage feedStorage,
+                       @Value("${filmorate.feed.capacity:200}") int capacity,
+                       @Value("${filmorate.feed.celebrity-followers:1000}") int celebrityFollowers,
+                       @Value("${filmorate.feed.max-page-size:100}") int maxPageSize) {
+        this.userStorage = userStorage;
+        this.feedStorage = feedStorage;
+        this.capacity = capacity;
+        this.celebrityFollowers = celebrityFollowers;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        feedStorage.findOutboxOwners().forEach(ownerId -> ring(outboxes, ownerId));
+    }
+
+    @EventListener
+    public void onLike(LikeEvent event) {
+        // Ленты пишет экземпляр, принявший лайк; остальные перечитают их из базы после записи
+        if (event.isLiked() && !event.isRemote()) {
+            publish(event.getUserId(), FeedEventType.LIKE, event.getFilmId(), event.getOccurredAt());
+        }
+    }
+
+    @EventListener
+    public void onFriendship(FriendshipEvent event) {
+        publish(event.getUserId(), FeedEventType.FRIEND, event.getFriendId(), event.getOccurredAt());
+    }
+
+    public FeedPage getFeed(long userId, Long cursor, int limit) {
+        if (limit <= 0 || limit > maxPageSize) {
+            throw new ValidationException("Размер страницы ленты должен быть от 1 до " + maxPageSize);
+        }
+        userStorage.getUser(userId)
+                .orElseThrow(() -> new NotFoundException("Пользователь с ID " + userId + " не найден"));
+
+        long before = cursor == null ? Long.MAX_VALUE : cursor;
+        List<FeedEvent> events = new ArrayList<>(loaded(inboxes, userId, false).page(before, limit + 1));
+        if (!outboxes.isEmpty()) {
+            for (User friend : userStorage.getFriendIds(userId)) {
+                if (outboxes.containsKey(friend.getId())) {
+                    events.addAll(loaded(outboxes, friend.getId(), true).page(before, limit + 1));
+                }
+            }
+            events.sort(Comparator.comparingLong(FeedEvent::getId).reversed());
+        }
+
+        if (events.size() <= limit) {
+            return FeedPage.builder().events(events).build();
+        }
+        List<FeedEvent> page = List.copyOf(events.subList(0, limit));
+        return FeedPage.builder()
+                .events(page)
+                .nextCursor(page.get(limit - 1).getId())
+                .build();
+    }
+
+    // Другой экземпляр записал в базу события этой ленты
+    public void reload(long ownerId, boolean outbox) {
+        if (outbox) {
+            // Исходящее кольцо могло появиться только что: без него читатели не увидят знаменитость
+            ring(outboxes, ownerId).markStale();
+            return;
+        }
+        FeedRing ring = inboxes.get(ownerId);
+        if (ring != null) {
+            ring.markStale();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.feed.flush-ms:1000}")
+    public void flush() {
+        flush(inboxes, dirtyInboxes, false);
+        flush(outboxes, dirtyOutboxes, true);
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    private void publish(long actorId, FeedEventType type, long entityId, Instant occurredAt) {
+        FeedEvent event = FeedEvent.builder()
+                .id(feedStorage.nextEventId())
+                .userId(actorId)
+                .type(type)
+                .entityId(entityId)
+                .timestamp(occurredAt)
+                .build();
+
+        Set<Long> followers = userStorage.getFollowerIds(actorId);
+        if (followers.size() > celebrityFollowers) {
+            ring(outboxes, actorId).add(event);
+            dirtyOutboxes.add(actorId);
+            return;
+        }
+        for (long followerId : followers) {
+            ring(inboxes, followerId).add(event);
+            dirtyInboxes.add(followerId);
+        }
+    }
+
+    private void flush(Map<Long, FeedRing> rings, Set<Long> dirty, boolean outbox) {
+        for (Iterator<Long> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            long ownerId = iterator.next();
+            iterator.remove();
+            FeedRing ring = rings.get(ownerId);
+            List<FeedEvent> pending = ring.drainPending();
+            try {
+                feedStorage.append(ownerId, outbox, pending, capacity);
+            } catch (RuntimeException e) {
+                log.warn("Не удалось сохранить ленту пользователя {}: {}", ownerId, e.getMessage());
+                ring.restorePending(pending);
+                dirty.add(ownerId);
+                return;
+            }
+        }
+    }
+
+    private FeedRing ring(Map<Long, FeedRing> rings, long ownerId) {
+        return rings.computeIfAbsent(ownerId, id -> new FeedRing(capacity));
+    }
+
+    private FeedRing loaded(Map<Long, FeedRing> rings, long ownerId, boolean outbox) {
+        FeedRing ring = ring(rings, ownerId);
+        ring.loadIfNeeded(() -> feedStorage.findLatest(ownerId, outbox, capacity));
+        return ring;
+    }
+}
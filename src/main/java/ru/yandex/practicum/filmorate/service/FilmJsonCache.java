@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Готовый UTF-8 JSON каждого фильма. Лайки в JSON фильма не попадают,
+// поэтому сбрасывать фрагмент нужно только при изменении или удалении самого фильма.
+// Когда кэш полон, место освобождается по алгоритму «часы»: фрагменты обходятся в порядке добавления,
+// прочитанный с прошлого обхода получает второй шанс, остальные вытесняются.
+@Component
+public class FilmJsonCache {
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final Map<Long, Fragment> fragments = new ConcurrentHashMap<>();
+    private final Queue<Fragment> clock = new ConcurrentLinkedQueue<>();
+    // Растёт при каждом сбросе: фрагмент фильма, прочитанного до сброса, в кэш не попадёт
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public FilmJsonCache(ObjectMapper objectMapper,
+                         @Value("${filmorate.cache.film-json.max-entries:10000}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    // Снимается до чтения фильмов из хранилища и передаётся в toJson/toJsonArray
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    public byte[] toJson(Film film, long stamp) {
+        Fragment cached = fragments.get(film.getId());
+        if (cached != null) {
+            cached.referenced = true;
+            return cached.json;
+        }
+
+        byte[] json = serialize(film);
+        if (maxEntries <= 0) return json;
+        while (fragments.size() >= maxEntries) {
+            if (!evictOne()) break;
+        }
+        Fragment fragment = new Fragment(film.getId(), json);
+        Fragment previous = fragments.put(film.getId(), fragment);
+        if (previous != null) {
+            clock.remove(previous);
+        }
+        clock.add(fragment);
+        if (invalidations.get() != stamp && fragments.remove(film.getId(), fragment)) {
+            clock.remove(fragment);
+        }
+        return json;
+    }
+
+    public byte[] toJsonArray(Collection<Film> films, long stamp) {
+        if (films.isEmpty()) return EMPTY_ARRAY;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(films.size() * 256);
+        out.write('[');
+        boolean first = true;
+        for (Film film : films) {
+            if (!first) out.write(',');
+            out.writeBytes(toJson(film, stamp));
+            first = false;
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    public void invalidate(long filmId) {
+        invalidations.incrementAndGet();
+        Fragment removed = fragments.remove(filmId);
+        if (removed != null) {
+            clock.remove(removed);
+        }
+    }
+
+    int size() {
+        return fragments.size();
+    }
+
+    // false, если вытеснять нечего
+    private boolean evictOne() {
+        Fragment candidate;
+        while ((candidate = clock.poll()) != null) {
+            if (fragments.get(candidate.filmId) != candidate) continue;
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                clock.add(candidate);
+            } else if (fragments.remove(candidate.filmId, candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] serialize(Film film) {
+        try {
+            return objectMapper.writeValueAsBytes(film);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Fragment {
+        private final long filmId;
+        private final byte[] json;
+        private volatile boolean referenced;
+
+        private Fragment(long filmId, byte[] json) {
+            this.filmId = filmId;
+            this.json = json;
+        }
+    }
+}
@@ -1,70 +1,161 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class FilmService {
-    @Qualifier("filmDbStorage") private final FilmStorage filmStorage;
-    @Qualifier("userDbStorage") private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
     private final GenreService genreService;
+    private final FilmJsonCache filmJsonCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PopularFilmsSnapshot popularFilmsSnapshot;
+    private final CatalogStats catalogStats;
+    private final SingleFlight<Long, Optional<byte[]>> filmJsonFlights = new SingleFlight<>();
+    private final SingleFlight<Integer, byte[]> topFilmsJsonFlights = new SingleFlight<>();
 
     public void addLike(long filmId, long userId) {
-        filmStorage.getFilm(filmId)
+        Film film = filmStorage.getFilm(filmId)
                 .orElseThrow(() -> new NotFoundException("Фильм не найден!"));
         userStorage.getUser(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь не найден!"));
 
         filmStorage.addLike(filmId, userId);
+        topFilmsJsonFlights.invalidate();
+        publishLike(film, userId, true);
     }
 
     public void removeLike(long filmId, long userId) {
-        filmStorage.getFilm(filmId)
+        Film film = filmStorage.getFilm(filmId)
                 .orElseThrow(() -> new NotFoundException("Фильм не найден!"));
         userStorage.getUser(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь не найден!"));
 
         filmStorage.removeLike(filmId, userId);
+        topFilmsJsonFlights.invalidate();
+        publishLike(film, userId, false);
+    }
+
+    private void publishLike(Film film, long userId, boolean liked) {
+        Set<Integer> genreIds = film.getGenres() == null ? Set.of()
+                : film.getGenres().stream().map(Genre::getId).collect(Collectors.toSet());
+        eventPublisher.publishEvent(LikeEvent.builder()
+                .filmId(film.getId())
+                .userId(userId)
+                .liked(liked)
+                .occurredAt(Instant.now())
+                .genreIds(genreIds)
+                .build());
     }
 
     public Collection<Film> getTopFilms(int count) {
-        return filmStorage.getTopFilms(count);
+        return popularFilmsSnapshot.slice(count)
+                .<Collection<Film>>map(PopularFilmsSnapshot.Slice::films)
+                .orElseGet(() -> filmStorage.getTopFilms(count));
+    }
+
+    public Collection<Film> getTopFilms(int count, Set<FilmField> fields) {
+        return popularFilmsSnapshot.slice(count)
+                .<Collection<Film>>map(PopularFilmsSnapshot.Slice::films)
+                .orElseGet(() -> filmStorage.getTopFilms(count, fields));
+    }
+
+    public byte[] getTopFilmsJson(int count) {
+        Optional<PopularFilmsSnapshot.Slice> slice = popularFilmsSnapshot.slice(count);
+        if (slice.isPresent()) {
+            return filmJsonCache.toJsonArray(slice.get().films(), slice.get().stamp());
+        }
+        return topFilmsJsonFlights.execute(count, () -> {
+            long stamp = filmJsonCache.stamp();
+            return filmJsonCache.toJsonArray(filmStorage.getTopFilms(count), stamp);
+        });
     }
 
     public Film addFilm(Film film) {
         validateMpaAndGenre(film);
-        return filmStorage.addFilm(fillGenres(film));
+        Film added = filmStorage.addFilm(fillGenres(film));
+        catalogStats.filmSaved(added);
+        invalidateFlights();
+        popularFilmsSnapshot.requestRefresh();
+        return added;
     }
 
     public Film updateFilm(Film film) {
         validateMpaAndGenre(film);
         filmStorage.getFilm(film.getId())
                 .orElseThrow(() -> new NotFoundException("Данный фильм не найден!"));
-        return filmStorage.updateFilm(film);
+        Film updated = filmStorage.updateFilm(film);
+        catalogStats.filmSaved(updated);
+        onFilmChanged(film.getId());
+        return updated;
     }
 
     public Collection<Film> getAllFilms() {
         return filmStorage.getAllFilms();
     }
 
+    public Collection<Film> getAllFilms(Set<FilmField> fields) {
+        return filmStorage.getAllFilms(fields);
+    }
+
+    public BatchResult<Film> getFilms(List<Long> ids, Set<FilmField> fields) {
+        return BatchLookup.load(ids, uniqueIds -> filmStorage.getFilms(uniqueIds, fields));
+    }
+
+    public byte[] getAllFilmsJson() {
+        long stamp = filmJsonCache.stamp();
+        return filmJsonCache.toJsonArray(filmStorage.getAllFilms(), stamp);
+    }
+
     public void deleteFilm(Film film) {
         filmStorage.removeFilm(film);
+        catalogStats.filmRemoved(film.getId());
+        onFilmChanged(film.getId());
     }
 
     public Optional<Film> getFilm(long id) {
         return filmStorage.getFilm(id);
     }
 
+    public Optional<Film> getFilm(long id, Set<FilmField> fields) {
+        return filmStorage.getFilm(id, fields);
+    }
+
+    public Optional<byte[]> getFilmJson(long id) {
+        return filmJsonFlights.execute(id, () -> {
+            long stamp = filmJsonCache.stamp();
+            return filmStorage.getFilm(id).map(film -> filmJsonCache.toJson(film, stamp));
+        });
+    }
+
+    // Чтение, начатое после записи, не должно получить результат вычисления, начатого до неё
+    private void invalidateFlights() {
+        filmJsonFlights.invalidate();
+        topFilmsJsonFlights.invalidate();
+    }
+
+    // Снимок топа держит объекты фильмов, после изменения фильма его нужно пересобрать
+    private void onFilmChanged(long filmId) {
+        filmJsonCache.invalidate(filmId);
+        invalidateFlights();
+        popularFilmsSnapshot.requestRefresh();
+    }
+
     private void validateMpaAndGenre(Film f) {
         var genreIds = f.getGenres() == null ? Set.<Integer>of()
                 : f.getGenres().stream()
@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Поток изменений лайков и топа фильмов для дашбордов (SSE).
+// Лайки копятся в общей таблице изменений и раз в такт схлопываются по фильму в одно событие,
+// топ пересчитывается тоже раз в такт - сколько бы ни было подписчиков.
+// Каждое событие сериализуется один раз, у подписчика своя ограниченная очередь;
+// кто не успевает её разбирать, отключается.
+@Service
+@Slf4j
+public class FilmStreamService implements DisposableBean {
+    private static final Set<FilmField> ID_ONLY = EnumSet.of(FilmField.ID);
+
+    private final FilmStorage filmStorage;
+    private final ObjectMapper objectMapper;
+    private final int topSize;
+    private final int bufferSize;
+    private final long emitterTimeoutMs;
+    private final long heartbeatMs;
+
+    private final Map<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong subscriberIds = new AtomicLong();
+    private final ConcurrentHashMap<Long, Integer> pendingLikes = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile List<Long> lastTop = List.of();
+    private volatile long lastFrameAt = System.currentTimeMillis();
+
+    public FilmStreamService(FilmStorage filmStorage, ObjectMapper objectMapper,
+                             @Value("${filmorate.stream.top-size:10}") int topSize,
+                             @Value("${filmorate.stream.buffer-size:64}") int bufferSize,
+                             @Value("${filmorate.stream.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                             @Value("${filmorate.stream.heartbeat-ms:15000}") long heartbeatMs) {
+        this.filmStorage = filmStorage;
+        this.objectMapper = objectMapper;
+        this.topSize = topSize;
+        this.bufferSize = bufferSize;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.heartbeatMs = heartbeatMs;
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(subscriberIds.incrementAndGet(), emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber.id));
+        emitter.onTimeout(() -> subscribers.remove(subscriber.id));
+        emitter.onError(e -> subscribers.remove(subscriber.id));
+        subscribers.put(subscriber.id, subscriber);
+
+        // Новый подписчик сразу получает текущий топ
+        List<Long> top = lastTop.isEmpty() ? loadTop() : lastTop;
+        subscriber.offer(frame("top", Map.of("filmIds", top, "entered", top, "left", List.of())));
+        log.debug("Подписчик потока фильмов {} подключён, всего {}", subscriber.id, subscribers.size());
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @EventListener
+    public void onLike(LikeEvent event) {
+        pendingLikes.merge(event.getFilmId(), event.isLiked() ? 1 : -1, Integer::sum);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.stream.tick-ms:500}")
+    public void tick() {
+        Map<Long, Integer> changes = drainPendingLikes();
+        if (subscribers.isEmpty()) {
+            lastTop = List.of();
+            return;
+        }
+
+        List<Set<ResponseBodyEmitter.DataWithMediaType>> frames = new ArrayList<>(2);
+        if (!changes.isEmpty()) {
+            List<Map<String, Object>> likes = changes.entrySet().stream()
+                    .map(change -> Map.<String, Object>of("filmId", change.getKey(), "delta", change.getValue()))
+                    .collect(Collectors.toList());
+            frames.add(frame("likes", Map.of("changes", likes)));
+
+            List<Long> previousTop = lastTop;
+            List<Long> top = loadTop();
+            if (!top.equals(previousTop)) {
+                frames.add(frame("top", Map.of("filmIds", top,
+                        "entered", difference(top, previousTop),
+                        "left", difference(previousTop, top))));
+            }
+        } else if (System.currentTimeMillis() - lastFrameAt >= heartbeatMs) {
+            // Комментарий раз в heartbeat-ms выявляет оборванные соединения
+            frames.add(SseEmitter.event().comment("heartbeat").build());
+        }
+        if (frames.isEmpty()) return;
+
+        lastFrameAt = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers.values()) {
+            for (Set<ResponseBodyEmitter.DataWithMediaType> frame : frames) {
+                subscriber.offer(frame);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        subscribers.values().forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    // remove забирает значение атомарно: лайк, пришедший после него, попадёт в следующий такт
+    Map<Long, Integer> drainPendingLikes() {
+        Map<Long, Integer> changes = new TreeMap<>();
+        for (Long filmId : pendingLikes.keySet()) {
+            Integer delta = pendingLikes.remove(filmId);
+            if (delta != null && delta != 0) {
+                changes.put(filmId, delta);
+            }
+        }
+        return changes;
+    }
+
+    private List<Long> loadTop() {
+        List<Long> top = filmStorage.getTopFilms(topSize, ID_ONLY).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+        lastTop = top;
+        return top;
+    }
+
+    private static List<Long> difference(List<Long> from, List<Long> other) {
+        Set<Long> otherIds = new HashSet<>(other);
+        return from.stream()
+                .filter(id -> !otherIds.contains(id))
+                .collect(Collectors.toList());
+    }
+
+    // Кадр собирается один раз и рассылается всем подписчикам без повторной сериализации
+    private Set<ResponseBodyEmitter.DataWithMediaType> frame(String name, Object payload) {
+        try {
+            return SseEmitter.event()
+                    .name(name)
+                    .data(objectMapper.writeValueAsString(payload), MediaType.APPLICATION_JSON)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void evict(Subscriber subscriber, String reason) {
+        if (subscribers.remove(subscriber.id) != null) {
+            log.info("Подписчик потока фильмов {} отключён: {}", subscriber.id, reason);
+            subscriber.emitter.complete();
+        }
+    }
+
+    private final class Subscriber {
+        private final long id;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Subscriber(long id, SseEmitter emitter) {
+            this.id = id;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private void offer(Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+            if (!queue.offer(frame)) {
+                evict(this, "очередь переполнена");
+                return;
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        // Отправка идёт в своём виртуальном потоке: медленный клиент не задерживает такт и других подписчиков
+        private void drain() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> frame;
+                while ((frame = queue.poll()) != null) {
+                    emitter.send(frame);
+                }
+            } catch (IOException | IllegalStateException e) {
+                evict(this, "ошибка отправки");
+                return;
+            } finally {
+                sending.set(false);
+            }
+            if (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+    }
+}
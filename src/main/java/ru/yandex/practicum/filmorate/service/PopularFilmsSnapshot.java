@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.event.ImportFinishedEvent;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.model.ImportKind;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Неизменяемый снимок топа фильмов для /films/popular: запрос берёт срез готового списка,
+// а пересчёт идёт в фоне по расписанию или после K изменений лайков (stale-while-revalidate).
+// Выключен по умолчанию: тогда топ каждый раз читается из хранилища и всегда свежий.
+@Component
+@Slf4j
+public class PopularFilmsSnapshot implements DisposableBean {
+    private final FilmStorage filmStorage;
+    private final FilmJsonCache filmJsonCache;
+    private final boolean enabled;
+    private final int size;
+    private final int refreshAfterLikes;
+
+    private final AtomicInteger likesSinceRefresh = new AtomicInteger();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "popular-films-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot snapshot;
+
+    public PopularFilmsSnapshot(FilmStorage filmStorage, FilmJsonCache filmJsonCache, MeterRegistry meterRegistry,
+                                @Value("${filmorate.popular-snapshot.enabled:false}") boolean enabled,
+                                @Value("${filmorate.popular-snapshot.size:1000}") int size,
+                                @Value("${filmorate.popular-snapshot.refresh-after-likes:100}") int refreshAfterLikes) {
+        this.filmStorage = filmStorage;
+        this.filmJsonCache = filmJsonCache;
+        this.enabled = enabled;
+        this.size = size;
+        this.refreshAfterLikes = refreshAfterLikes;
+        Gauge.builder("filmorate.popular.snapshot.age", this, PopularFilmsSnapshot::ageSeconds)
+                .description("Возраст снимка популярных фильмов")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    // Пусто, если снимок выключен, ещё не построен или запрошено больше фильмов, чем в нём есть
+    public Optional<Slice> slice(int count) {
+        Snapshot current = snapshot;
+        if (current == null || count < 0 || count > size) return Optional.empty();
+        List<Film> films = current.films.subList(0, Math.min(count, current.films.size()));
+        return Optional.of(new Slice(films, current.stamp));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        requestRefresh();
+    }
+
+    @EventListener
+    public void onLike(LikeEvent event) {
+        if (likesSinceRefresh.incrementAndGet() >= refreshAfterLikes) {
+            requestRefresh();
+        }
+    }
+
+    @EventListener
+    public void onImportFinished(ImportFinishedEvent event) {
+        if (event.getKind() == ImportKind.FILMS || event.getKind() == ImportKind.LIKES) {
+            requestRefresh();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.popular-snapshot.refresh-ms:5000}")
+    public void scheduledRefresh() {
+        requestRefresh();
+    }
+
+    // Пересчёт всегда вне потока запроса; одновременно идёт не больше одного.
+    // Запрос, пришедший во время пересчёта, не теряется: после него пересчёт повторится один раз
+    // (фильм могли изменить или удалить уже после того, как текущий пересчёт его прочитал)
+    public void requestRefresh() {
+        if (!enabled) return;
+        refreshRequested.set(true);
+        if (refreshing.compareAndSet(false, true)) {
+            refresher.execute(this::refreshWhileRequested);
+        }
+    }
+
+    private void refreshWhileRequested() {
+        try {
+            while (refreshRequested.getAndSet(false)) {
+                refresh();
+            }
+        } finally {
+            refreshing.set(false);
+        }
+        // Запрос между выходом из цикла и снятием флага пересчёта
+        if (refreshRequested.get() && refreshing.compareAndSet(false, true)) {
+            refresher.execute(this::refreshWhileRequested);
+        }
+    }
+
+    private void refresh() {
+        try {
+            likesSinceRefresh.set(0);
+            long stamp = filmJsonCache.stamp();
+            List<Film> films = List.copyOf(filmStorage.getTopFilms(size));
+            snapshot = new Snapshot(films, stamp, System.nanoTime());
+        } catch (RuntimeException e) {
+            log.error("Не удалось обновить снимок популярных фильмов: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    private double ageSeconds() {
+        Snapshot current = snapshot;
+        return current == null ? Double.NaN : (System.nanoTime() - current.builtAtNanos) / 1e9;
+    }
+
+    // Срез снимка и отметка кэша JSON, снятая до чтения фильмов
+    public record Slice(List<Film> films, long stamp) {
+    }
+
+    private record Snapshot(List<Film> films, long stamp, long builtAtNanos) {
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.film.FilmReadModel;
+
+import java.util.List;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class ReadModelService {
+    private final FilmReadModel filmReadModel;
+
+    public int rebuild() {
+        int films = filmReadModel.rebuild();
+        log.info("Read model фильмов пересобрана, строк: {}", films);
+        return films;
+    }
+
+    public List<Long> checkDrift() {
+        List<Long> driftedFilmIds = filmReadModel.findDrift();
+        if (!driftedFilmIds.isEmpty()) {
+            log.warn("Read model фильмов расходится с исходными таблицами для фильмов {}", driftedFilmIds);
+        }
+        return driftedFilmIds;
+    }
+
+    public List<Long> repairDrift() {
+        List<Long> driftedFilmIds = checkDrift();
+        if (driftedFilmIds.isEmpty()) return driftedFilmIds;
+
+        driftedFilmIds.forEach(filmReadModel::refresh);
+        log.info("Расхождения read model исправлены");
+        return driftedFilmIds;
+    }
+}
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Одинаковые одновременные чтения выполняются один раз: первый вызов считает результат,
+// остальные ждут его и получают тот же объект. После завершения результат не хранится.
+// Запись вызывает invalidate(): чтение, начатое после неё, не присоединится к более раннему вычислению.
+final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<FlightKey<K>, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    V execute(K key, Supplier<V> loader) {
+        FlightKey<K> flightKey = new FlightKey<>(epoch.get(), key);
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = flights.putIfAbsent(flightKey, own);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(flightKey, own);
+        }
+    }
+
+    void invalidate() {
+        epoch.incrementAndGet();
+    }
+
+    private V await(CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    private record FlightKey<K>(long epoch, K key) {
+    }
+}
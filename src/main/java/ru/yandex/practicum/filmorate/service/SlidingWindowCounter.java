@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Счётчик событий в скользящем окне из кольца корзин фиксированной длины.
+// Корзина - одно long: старшие 32 бита номер интервала, младшие 32 - число событий в нём.
+// Окно поворачивается без блокировок: первое событие нового интервала CAS-ом сбрасывает устаревшую корзину.
+final class SlidingWindowCounter {
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLongArray buckets;
+    private final long bucketMillis;
+
+    SlidingWindowCounter(int buckets, long bucketMillis) {
+        this.buckets = new AtomicLongArray(buckets);
+        this.bucketMillis = bucketMillis;
+    }
+
+    void add(long timeMillis) {
+        long interval = timeMillis / bucketMillis;
+        int slot = (int) (interval % buckets.length());
+        while (true) {
+            long current = buckets.get(slot);
+            long currentInterval = current >>> 32;
+            long next;
+            if (currentInterval == interval) {
+                next = current + 1;
+            } else if (currentInterval < interval) {
+                next = interval << 32 | 1;
+            } else {
+                // Корзину уже занял более поздний интервал: событие старше окна
+                return;
+            }
+            if (buckets.compareAndSet(slot, current, next)) return;
+        }
+    }
+
+    long count(long nowMillis) {
+        return (long) score(nowMillis, Double.POSITIVE_INFINITY);
+    }
+
+    // Сумма событий в окне, где вклад корзины вдвое падает каждые halfLifeBuckets интервалов
+    double score(long nowMillis, double halfLifeBuckets) {
+        long nowInterval = nowMillis / bucketMillis;
+        double score = 0;
+        for (int slot = 0; slot < buckets.length(); slot++) {
+            long value = buckets.get(slot);
+            long age = nowInterval - (value >>> 32);
+            if (age < 0 || age >= buckets.length()) continue;
+            score += (value & COUNT_MASK) * Math.pow(0.5, age / halfLifeBuckets);
+        }
+        return score;
+    }
+}
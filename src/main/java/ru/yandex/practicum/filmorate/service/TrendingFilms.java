@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.TrendWindow;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Трендовые фильмы (GET /films/trending): лайки за последний час, день или неделю с затуханием по времени.
+// Каждому фильму с лайками за неделю соответствуют счётчики скользящих окон в памяти, топ считается по ним,
+// таблица лайков читается только при старте. Снятый лайк из окна не вычитается: окно считает сами события.
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TrendingFilms {
+    private static final TrendWindow[] WINDOWS = TrendWindow.values();
+
+    private final FilmStorage filmStorage;
+    private final Map<Long, SlidingWindowCounter[]> counters = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        long since = System.currentTimeMillis() - TrendWindow.WEEK.getLengthMillis();
+        int[] loaded = new int[1];
+        filmStorage.forEachLikeSince(Instant.ofEpochMilli(since), (filmId, likedAt) -> {
+            record(filmId, likedAt.toEpochMilli());
+            loaded[0]++;
+        });
+        log.info("Счётчики трендов заполнены: лайков за неделю {}, фильмов {}", loaded[0], counters.size());
+    }
+
+    @EventListener
+    public void onLike(LikeEvent event) {
+        if (event.isLiked()) {
+            record(event.getFilmId(), event.getOccurredAt().toEpochMilli());
+        }
+    }
+
+    public List<Film> getTrending(TrendWindow window, int count) {
+        if (count <= 0) {
+            throw new ValidationException("Количество фильмов должно быть положительным");
+        }
+
+        long now = System.currentTimeMillis();
+        int index = window.ordinal();
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        counters.forEach((filmId, filmCounters) -> {
+            double score = filmCounters[index].score(now, window.getHalfLifeBuckets());
+            if (score <= 0) return;
+            if (top.size() < count) {
+                top.add(Map.entry(filmId, score));
+            } else if (score > top.peek().getValue()) {
+                top.poll();
+                top.add(Map.entry(filmId, score));
+            }
+        });
+
+        List<Long> ranked = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            ranked.add(top.poll().getKey());
+        }
+        Collections.reverse(ranked);
+        Map<Long, Film> films = filmStorage.getFilms(ranked);
+        return ranked.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Фильмы без лайков за неделю больше не нужны в памяти. Гонка с удалением
+    // может потерять лайк, пришедший в этот момент фильму, который неделю никто не лайкал
+    @Scheduled(fixedDelayString = "${filmorate.trending.cleanup-ms:600000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        int week = TrendWindow.WEEK.ordinal();
+        counters.values().removeIf(filmCounters -> filmCounters[week].count(now) == 0);
+    }
+
+    private void record(long filmId, long timeMillis) {
+        SlidingWindowCounter[] filmCounters = counters.computeIfAbsent(filmId, id -> newCounters());
+        for (SlidingWindowCounter counter : filmCounters) {
+            counter.add(timeMillis);
+        }
+    }
+
+    private static SlidingWindowCounter[] newCounters() {
+        SlidingWindowCounter[] filmCounters = new SlidingWindowCounter[WINDOWS.length];
+        for (TrendWindow window : WINDOWS) {
+            filmCounters[window.ordinal()] = new SlidingWindowCounter(window.getBuckets(), window.getBucketMillis());
+        }
+        return filmCounters;
+    }
+}
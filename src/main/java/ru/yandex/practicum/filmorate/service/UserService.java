@@ -1,63 +1,133 @@
 package ru.yandex.practicum.filmorate.service;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Qualifier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.event.FriendshipEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.graph.FriendGraph;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.FriendPath;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
+import ru.yandex.practicum.filmorate.model.FriendshipState;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.Optional;
+import java.time.Instant;
+import java.util.*;
 
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class UserService {
-    @Qualifier("userDbStorage") private final UserStorage userStorage;
+    private final UserStorage userStorage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FriendGraph friendGraph;
+    private final SingleFlight<Long, Optional<User>> userFlights = new SingleFlight<>();
+    private final SingleFlight<Long, List<User>> friendsFlights = new SingleFlight<>();
+    private final int purgeChunkSize;
+    private final long purgePauseMs;
+    private final int maxPathDepth;
+
+    public UserService(UserStorage userStorage, ApplicationEventPublisher eventPublisher, FriendGraph friendGraph,
+                       @Value("${filmorate.users.purge.chunk-size:500}") int purgeChunkSize,
+                       @Value("${filmorate.users.purge.pause-ms:50}") long purgePauseMs,
+                       @Value("${filmorate.graph.max-depth:10}") int maxPathDepth) {
+        if (maxPathDepth < 1) {
+            throw new IllegalArgumentException("Предельная глубина поиска цепочки дружбы должна быть положительной");
+        }
+        this.userStorage = userStorage;
+        this.eventPublisher = eventPublisher;
+        this.friendGraph = friendGraph;
+        this.purgeChunkSize = Math.max(1, purgeChunkSize);
+        this.purgePauseMs = Math.max(0, purgePauseMs);
+        this.maxPathDepth = maxPathDepth;
+    }
 
-    public void addFriend(long userId, long friendId) {
+    public FriendshipState addFriend(long userId, long friendId) {
         if (userId == friendId) {
             throw new IllegalArgumentException("Нельзя добавить самого себя в друзья!");
         }
 
-        if (userStorage.existsFriend(userId, friendId)) {
-            throw new ValidationException("Пользователь уже добавлен в друзья");
-        }
-
-        userStorage.addFriend(userId, friendId);
-
-        if (userStorage.existsFriend(friendId, userId)) {
-            userStorage.updateFriendStatus(userId, friendId, true);
-            userStorage.updateFriendStatus(friendId, userId, true);
-        } else {
-            userStorage.updateFriendStatus(userId, friendId, true);
-        }
+        FriendshipState state = userStorage.createFriendship(userId, friendId);
+        invalidateFlights();
+        eventPublisher.publishEvent(FriendshipEvent.builder()
+                .userId(userId)
+                .friendId(friendId)
+                .state(state)
+                .occurredAt(Instant.now())
+                .build());
+        return state;
     }
 
     public User addUser(User user) {
-        return userStorage.addUser(user);
+        User added = userStorage.addUser(user);
+        invalidateFlights();
+        return added;
     }
 
     public Optional<User> getUser(long id) {
-        return userStorage.getUser(id);
+        return userFlights.execute(id, () -> userStorage.getUser(id));
+    }
+
+    public Optional<User> getUser(long id, Set<UserField> fields) {
+        return userStorage.getUser(id, fields);
     }
 
     public User updateUser(User user) {
-        return userStorage.updateUser(user);
+        User updated = userStorage.updateUser(user);
+        invalidateFlights();
+        return updated;
     }
 
     public void removeUser(User user) {
         userStorage.removeUser(user);
+        invalidateFlights();
+    }
+
+    // Массовое удаление идёт пачками в отдельных транзакциях с паузой между ними,
+    // чтобы не держать блокировки и пул соединений в ущерб обычным запросам
+    public int removeUsers(List<Long> ids) {
+        List<Long> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int removed = 0;
+        for (int from = 0; from < uniqueIds.size(); from += purgeChunkSize) {
+            if (from > 0) {
+                pause();
+            }
+            List<Long> chunk = uniqueIds.subList(from, Math.min(from + purgeChunkSize, uniqueIds.size()));
+            removed += userStorage.removeUsers(chunk);
+            invalidateFlights();
+        }
+        log.info("Массово удалено пользователей: {} из {}", removed, uniqueIds.size());
+        return removed;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(purgePauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Массовое удаление прервано");
+        }
     }
 
     public Collection<User> getAllUsers() {
         return userStorage.getAllUsers();
     }
 
+    public Collection<User> getAllUsers(Set<UserField> fields) {
+        return userStorage.getAllUsers(fields);
+    }
+
+    public BatchResult<User> getUsers(List<Long> ids, Set<UserField> fields) {
+        return BatchLookup.load(ids, uniqueIds -> userStorage.getUsers(uniqueIds, fields));
+    }
+
     public void removeFriend(long userId, long friendId) {
         userStorage.removeFriend(userId, friendId);
+        invalidateFlights();
     }
 
     public Collection<User> getCommonFriends(long userId1, long userId2) {
@@ -70,6 +140,39 @@ public class UserService {
     }
 
     public List<User> getUserFriends(long userId) {
-        return userStorage.getFriendIds(userId);
+        return friendsFlights.execute(userId, () -> userStorage.getFriendIds(userId));
+    }
+
+    public List<User> getUserFriends(long userId, Set<UserField> fields) {
+        return userStorage.getFriendIds(userId, fields);
+    }
+
+    public List<FriendWithMutualCount> getUserFriendsWithMutualCounts(long userId, Set<UserField> fields) {
+        Map<Long, Integer> counts = userStorage.countMutualFriends(userId);
+        return userStorage.getFriendIds(userId, fields).stream()
+                .map(friend -> FriendWithMutualCount.builder()
+                        .user(friend)
+                        .mutualFriends(counts.getOrDefault(friend.getId(), 0))
+                        .build())
+                .toList();
+    }
+
+    public FriendPath getFriendPath(long userId, long otherId, int maxDepth) {
+        if (maxDepth < 1 || maxDepth > maxPathDepth) {
+            throw new ValidationException("Глубина поиска должна быть от 1 до " + maxPathDepth);
+        }
+        userStorage.getUser(userId)
+                .orElseThrow(() -> new NotFoundException("Пользователь с ID " + userId + " не найден"));
+        userStorage.getUser(otherId)
+                .orElseThrow(() -> new NotFoundException("Пользователь с ID " + otherId + " не найден"));
+
+        return friendGraph.findPath(userId, otherId, maxDepth);
+    }
+
+    // Чтение, начатое после записи, не должно получить результат вычисления, начатого до неё
+    private void invalidateFlights() {
+        userFlights.invalidate();
+        friendsFlights.invalidate();
+        friendGraph.markDirty();
     }
-}
\ No newline at end of file
+}
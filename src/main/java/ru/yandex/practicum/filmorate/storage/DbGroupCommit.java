@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Групповая фиксация мелких записей в базу.
+// Запросы, пришедшие в одно окно, выполняются одним потоком в общей транзакции: один commit (и один сброс
+// файла H2) на всю пачку. Каждая запись идёт в своей точке сохранения, её ошибка откатывает только её,
+// а вызывающий получает результат уже после фиксации пачки.
+// Если вызов идёт внутри открытой транзакции, запись участвует в ней; при нулевом окне идёт в своей транзакции.
+// Поток пачек работает через собственный менеджер транзакций JDBC: точки сохранения нужны ему при любом
+// менеджере транзакций приложения.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class DbGroupCommit implements DisposableBean {
+
+    private final TransactionTemplate batchTransaction;
+    private final TransactionTemplate nestedTransaction;
+    private final TransactionTemplate singleTransaction;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public DbGroupCommit(DataSource dataSource,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${filmorate.storage.db.group-commit-window-us:0}") long windowMicros,
+                         @Value("${filmorate.storage.db.group-commit-max-batch:256}") int maxBatch) {
+        JdbcTransactionManager batchTransactionManager = new JdbcTransactionManager(dataSource);
+        this.batchTransaction = new TransactionTemplate(batchTransactionManager);
+        this.nestedTransaction = new TransactionTemplate(batchTransactionManager);
+        this.nestedTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.singleTransaction = transactionTemplate;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = Math.max(1, maxBatch);
+        if (windowNanos > 0) {
+            running = true;
+            writer = new Thread(this::writeLoop, "db-group-commit");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    public <T> T execute(Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+        if (!running) {
+            return singleTransaction.execute(status -> work.get());
+        }
+
+        Write<T> write = new Write<>(work);
+        queue.add(write);
+        try {
+            return write.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void execute(Runnable work) {
+        execute(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (!running) return;
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void writeLoop() {
+        List<Write<?>> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                collectBatch(batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+        // Поток остановлен прерыванием: оставшиеся записи не должны ждать вечно
+        Write<?> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new IllegalStateException("Поток групповой фиксации остановлен"));
+        }
+    }
+
+    // Ждём попутчиков не дольше окна, как и журнал хранилищ в памяти
+    private void collectBatch(List<Write<?>> batch) throws InterruptedException {
+        queue.drainTo(batch, maxBatch - batch.size());
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatch) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) break;
+            Write<?> next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    // Ловится любой Throwable: Error, ушедший из потока пачек, оставил бы вызывающих навсегда ждать в join()
+    private void commit(List<Write<?>> batch) {
+        try {
+            batchTransaction.executeWithoutResult(status -> batch.forEach(this::apply));
+        } catch (Throwable e) {
+            log.warn("Групповая фиксация из {} записей не удалась: {}", batch.size(), e.getMessage());
+            batch.forEach(write -> write.result.completeExceptionally(e));
+            return;
+        }
+        batch.forEach(Write::complete);
+    }
+
+    private void apply(Write<?> write) {
+        try {
+            nestedTransaction.executeWithoutResult(status -> write.run());
+        } catch (Throwable e) {
+            write.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Write<T> {
+        private final Supplier<T> work;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+
+        private Write(Supplier<T> work) {
+            this.work = work;
+        }
+
+        private void run() {
+            value = work.get();
+        }
+
+        // Успешные записи видны вызывающим только после общего commit
+        private void complete() {
+            result.complete(value);
+        }
+    }
+}
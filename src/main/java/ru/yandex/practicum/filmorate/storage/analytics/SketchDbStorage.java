@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.storage.analytics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+@Qualifier("sketchDbStorage")
+public class SketchDbStorage implements SketchStorage {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void save(String kind, LocalDate day, int sketchKey, byte[] data) {
+        jdbcTemplate.update("MERGE INTO analytics_sketches (kind, sketch_day, sketch_key, data) " +
+                "KEY (kind, sketch_day, sketch_key) VALUES (?, ?, ?, ?)", kind, day, sketchKey, data);
+    }
+
+    @Override
+    public List<StoredSketch> findSince(LocalDate day) {
+        return jdbcTemplate.query("SELECT * FROM analytics_sketches WHERE sketch_day >= ?",
+                (rs, rowNum) -> new StoredSketch(
+                        rs.getString("kind"),
+                        rs.getDate("sketch_day").toLocalDate(),
+                        rs.getInt("sketch_key"),
+                        rs.getBytes("data")),
+                day);
+    }
+
+    @Override
+    public void deleteBefore(LocalDate day) {
+        jdbcTemplate.update("DELETE FROM analytics_sketches WHERE sketch_day < ?", day);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.storage.analytics;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface SketchStorage {
+    // kind - вид скетча, sketchKey - его ключ внутри дня (например, id жанра)
+    void save(String kind, LocalDate day, int sketchKey, byte[] data);
+
+    List<StoredSketch> findSince(LocalDate day);
+
+    void deleteBefore(LocalDate day);
+
+    record StoredSketch(String kind, LocalDate day, int sketchKey, byte[] data) {
+    }
+}
@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.storage.bulk;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportKind;
+import ru.yandex.practicum.filmorate.model.ImportedFriendship;
+import ru.yandex.practicum.filmorate.model.ImportedLike;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeLog;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeType;
+import ru.yandex.practicum.filmorate.storage.film.FilmReadModel;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+@Qualifier("bulkImportDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class BulkImportDbStorage implements BulkImportStorage {
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmReadModel filmReadModel;
+    private final TransactionTemplate transactionTemplate;
+    private final ChangeLog changeLog;
+
+    @Override
+    public void insertUsers(List<User> users) {
+        List<Object[]> withId = new ArrayList<>();
+        List<Object[]> withoutId = new ArrayList<>();
+        for (User user : users) {
+            Object[] row = {user.getEmail(), user.getLogin(), user.getName(), Date.valueOf(user.getBirthday())};
+            if (user.getId() != null && user.getId() > 0) {
+                withId.add(prepend(user.getId(), row));
+            } else {
+                withoutId.add(row);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            batch("INSERT INTO users (id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)", withId);
+            batch("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)", withoutId);
+        });
+    }
+
+    @Override
+    public void insertFilms(List<Film> films) {
+        List<Film> withId = films.stream().filter(film -> film.getId() > 0).toList();
+        List<Film> withoutId = films.stream().filter(film -> film.getId() <= 0).toList();
+        List<Object[]> rowsWithId = withId.stream().map(film -> prepend(film.getId(), filmRow(film))).toList();
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeFilms(films, rowsWithId, withoutId));
+        } catch (RuntimeException e) {
+            // id из откатившейся пачки не должны попасть в повторную запись
+            withoutId.forEach(film -> film.setId(0));
+            throw e;
+        }
+    }
+
+    private void writeFilms(List<Film> films, List<Object[]> rowsWithId, List<Film> withoutId) {
+        batch("INSERT INTO films (id, name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?, ?)",
+                rowsWithId);
+        insertGeneratingIds(withoutId);
+
+        List<Object[]> genres = new ArrayList<>();
+        for (Film film : films) {
+            if (film.getGenres() == null) continue;
+            for (Genre genre : film.getGenres()) {
+                genres.add(new Object[]{film.getId(), genre.getId()});
+            }
+        }
+        batch("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", genres);
+    }
+
+    @Override
+    public void insertLikes(List<ImportedLike> likes) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = likes.stream()
+                .map(like -> new Object[]{like.getFilmId(), like.getUserId(),
+                        like.getCreatedAt() != null ? Timestamp.from(like.getCreatedAt()) : now})
+                .toList();
+        transactionTemplate.executeWithoutResult(status ->
+                batch("MERGE INTO likes (film_id, user_id, created_at) KEY (film_id, user_id) VALUES (?, ?, ?)", rows));
+    }
+
+    @Override
+    public void insertFriendships(List<ImportedFriendship> friendships) {
+        List<Object[]> rows = friendships.stream()
+                .map(friendship -> new Object[]{friendship.getUserId(), friendship.getFriendId()})
+                .toList();
+        transactionTemplate.executeWithoutResult(status ->
+                batch("MERGE INTO friends (user_id, friend_id, status) KEY (user_id, friend_id) VALUES (?, ?, true)",
+                        rows));
+    }
+
+    @Override
+    public void completeImport(ImportKind kind) {
+        switch (kind) {
+            case USERS -> restartIdentity("users");
+            case FILMS -> {
+                restartIdentity("films");
+                filmReadModel.rebuild();
+            }
+            // Счётчики лайков в модели чтения при пакетной записи не ведутся
+            case LIKES -> filmReadModel.rebuild();
+            case FRIENDS -> {
+            }
+        }
+        // Другие экземпляры пересчитывают свои кэши так же, как этот по ImportFinishedEvent
+        changeLog.record(ChangeType.IMPORT, kind.name());
+    }
+
+    // Явно заданные id не двигают автоинкремент: следующий обычный INSERT иначе столкнётся с ними
+    private void restartIdentity(String table) {
+        Long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+    }
+
+    private void insertGeneratingIds(List<Film> films) {
+        if (films.isEmpty()) return;
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(
+                        "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Object[] row = filmRow(films.get(i));
+                        for (int column = 0; column < row.length; column++) {
+                            ps.setObject(column + 1, row[column]);
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < films.size(); i++) {
+            films.get(i).setId(((Number) keys.get(i).get("ID")).longValue());
+        }
+    }
+
+    private Object[] filmRow(Film film) {
+        Integer mpaId = film.getMpa() != null && film.getMpa().getId() != 0 ? film.getMpa().getId() : null;
+        return new Object[]{film.getName(), film.getDescription(), Date.valueOf(film.getReleaseDate()),
+                film.getDuration(), mpaId};
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+
+    private static Object[] prepend(Object first, Object[] row) {
+        Object[] result = new Object[row.length + 1];
+        result[0] = first;
+        System.arraycopy(row, 0, result, 1, row.length);
+        return result;
+    }
+}
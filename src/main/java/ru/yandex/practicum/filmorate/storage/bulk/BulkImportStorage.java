@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.bulk;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportKind;
+import ru.yandex.practicum.filmorate.model.ImportedFriendship;
+import ru.yandex.practicum.filmorate.model.ImportedLike;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+
+// Запись пачек импорта: каждая пачка в одной транзакции, целиком или никак.
+// Фильмы и пользователи с id сохраняются под ним, без id получают новый
+public interface BulkImportStorage {
+    void insertUsers(List<User> users);
+
+    void insertFilms(List<Film> films);
+
+    // Повторная загрузка того же лайка или дружбы ничего не меняет
+    void insertLikes(List<ImportedLike> likes);
+
+    void insertFriendships(List<ImportedFriendship> friendships);
+
+    // Вызывается после импорта: сдвигает счётчики id и пересобирает производные таблицы
+    void completeImport(ImportKind kind);
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.storage.changelog;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+// Журнал изменений в общей базе для согласования локальных кэшей нескольких экземпляров.
+// Хранилища пишут запись в той же транзакции, что и само изменение: откатилось изменение - откатилась и запись.
+// Каждый экземпляр помечает свои записи node_id, чтобы не применять их к себе повторно.
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class ChangeLog {
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ChangeLog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void record(ChangeType type, long entityId, long relatedId) {
+        jdbcTemplate.update("INSERT INTO change_log (node_id, change_type, entity_id, related_id) VALUES (?, ?, ?, ?)",
+                nodeId, type.name(), entityId, relatedId);
+    }
+
+    // Запись без сущности: вид изменения уточняется строкой (имя константы, а не ordinal - переживёт перестановку)
+    public void record(ChangeType type, String detail) {
+        jdbcTemplate.update("INSERT INTO change_log (node_id, change_type, entity_id, detail) VALUES (?, ?, 0, ?)",
+                nodeId, type.name(), detail);
+    }
+
+    public void recordAll(ChangeType type, Collection<Long> entityIds) {
+        jdbcTemplate.batchUpdate("INSERT INTO change_log (node_id, change_type, entity_id, related_id) " +
+                        "VALUES (?, ?, ?, 0)",
+                entityIds.stream().map(id -> new Object[]{nodeId, type.name(), id}).toList());
+    }
+
+    // Записи всех экземпляров, включая свои: по ним видно, что в последовательности id нет дыр
+    public List<Entry> findAfter(long afterId, int limit) {
+        return jdbcTemplate.query("SELECT * FROM change_log WHERE id > ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new Entry(
+                        rs.getLong("id"),
+                        rs.getString("node_id"),
+                        ChangeType.valueOf(rs.getString("change_type")),
+                        rs.getLong("entity_id"),
+                        rs.getLong("related_id"),
+                        rs.getString("detail"),
+                        rs.getTimestamp("created_at").toInstant()),
+                afterId, limit);
+    }
+
+    public long findMaxId() {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM change_log", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    public int deleteBefore(Instant before) {
+        return jdbcTemplate.update("DELETE FROM change_log WHERE created_at < ?", Timestamp.from(before));
+    }
+
+    public record Entry(long id, String nodeId, ChangeType type, long entityId, long relatedId, String detail,
+                        Instant createdAt) {
+    }
+}
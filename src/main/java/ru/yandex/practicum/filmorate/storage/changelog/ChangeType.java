@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.storage.changelog;
+
+// Вид записи журнала изменений. entity_id - фильм или пользователь, related_id - второй участник
+// (пользователь лайка, друг); IMPORT пишет имя ImportKind в detail, как и сам тип - строкой, а не номером.
+// FEED_APPENDED - владелец ленты, related_id 1 для исходящей ленты знаменитости и 0 для входящей
+public enum ChangeType {
+    FILM_SAVED,
+    FILM_REMOVED,
+    LIKE_ADDED,
+    LIKE_REMOVED,
+    USER_REMOVED,
+    FRIENDSHIP_CHANGED,
+    IMPORT,
+    FEED_APPENDED
+}
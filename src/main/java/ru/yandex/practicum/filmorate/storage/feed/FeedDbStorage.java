@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.model.FeedEventType;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeLog;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeType;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Дописанная лента отмечается в журнале изменений, чтобы другие экземпляры перечитали её из базы.
+// Журнала нет при хранении в памяти: там экземпляр один.
+@Repository
+@Qualifier("feedDbStorage")
+public class FeedDbStorage implements FeedStorage {
+    private final JdbcTemplate jdbcTemplate;
+    private final ChangeLog changeLog;
+
+    private final RowMapper<FeedEvent> feedEventRowMapper = (rs, rowNum) -> FeedEvent.builder()
+            .id(rs.getLong("event_id"))
+            .userId(rs.getLong("actor_id"))
+            .type(FeedEventType.valueOf(rs.getString("event_type")))
+            .entityId(rs.getLong("entity_id"))
+            .timestamp(rs.getTimestamp("created_at").toInstant())
+            .build();
+
+    public FeedDbStorage(JdbcTemplate jdbcTemplate, ObjectProvider<ChangeLog> changeLog) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeLog = changeLog.getIfAvailable();
+    }
+
+    @Override
+    public void append(long ownerId, boolean outbox, Collection<FeedEvent> events, int keep) {
+        if (events.isEmpty()) return;
+
+        List<Object[]> params = events.stream()
+                .map(event -> new Object[]{ownerId, outbox, event.getId(), event.getUserId(),
+                        event.getType().name(), event.getEntityId(), Timestamp.from(event.getTimestamp())})
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate("MERGE INTO feed_events (owner_id, outbox, event_id, actor_id, event_type, " +
+                "entity_id, created_at) KEY (owner_id, outbox, event_id) VALUES (?, ?, ?, ?, ?, ?, ?)", params);
+
+        jdbcTemplate.update("DELETE FROM feed_events WHERE owner_id = ? AND outbox = ? AND event_id < " +
+                        "(SELECT MIN(event_id) FROM (SELECT event_id FROM feed_events " +
+                        "WHERE owner_id = ? AND outbox = ? ORDER BY event_id DESC LIMIT ?))",
+                ownerId, outbox, ownerId, outbox, keep);
+
+        // Отметка после записи: если она не удастся, события вернутся в pending и запишутся ещё раз
+        if (changeLog != null) {
+            changeLog.record(ChangeType.FEED_APPENDED, ownerId, outbox ? 1 : 0);
+        }
+    }
+
+    @Override
+    public List<FeedEvent> findLatest(long ownerId, boolean outbox, int limit) {
+        return jdbcTemplate.query("SELECT * FROM feed_events WHERE owner_id = ? AND outbox = ? " +
+                "ORDER BY event_id DESC LIMIT ?", feedEventRowMapper, ownerId, outbox, limit);
+    }
+
+    @Override
+    public Set<Long> findOutboxOwners() {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT owner_id FROM feed_events WHERE outbox = true", Long.class));
+    }
+
+    @Override
+    public long nextEventId() {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR feed_event_seq", Long.class);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface FeedStorage {
+    // Дописывает события в ленту и оставляет в ней только keep последних.
+    // Повторная запись тех же событий ничего не меняет
+    void append(long ownerId, boolean outbox, Collection<FeedEvent> events, int keep);
+
+    // Последние события ленты, от новых к старым
+    List<FeedEvent> findLatest(long ownerId, boolean outbox, int limit);
+
+    Set<Long> findOutboxOwners();
+
+    // Id следующего события, уникальный для всех экземпляров на общей базе
+    long nextEventId();
+}
@@ -2,37 +2,56 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.DbGroupCommit;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeLog;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeType;
+import ru.yandex.practicum.filmorate.validation.ModelValidator;
 
-import java.sql.*;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.time.LocalDate;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
 @Qualifier("filmDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 public class FilmDbStorage implements FilmStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
-    private static final int DESCRIPTION_MAX_LENGTH = 200;
+    private final FilmReadModel readModel;
 
-    private static final LocalDate BIRTHDAY_CINEMA = LocalDate.of(1895, 12,28);
+    // Фильм, его жанры и строка модели чтения меняются вместе или не меняются вовсе
+    private final TransactionTemplate transactionTemplate;
+
+    // Лайки мелкие и частые: их выгоднее фиксировать пачками
+    private final DbGroupCommit groupCommit;
+
+    // Пишется в транзакции каждого изменения, чтобы другие экземпляры сбросили свои кэши
+    private final ChangeLog changeLog;
 
     @Override
     public Film addFilm(Film film) {
         validateFilm(film);
+        return transactionTemplate.execute(status -> insertFilm(film));
+    }
+
+    private Film insertFilm(Film film) {
         String sql = "INSERT INTO FILMS (name, description, release_date, duration, mpa_id) VALUES (?,?,?,?,?)";
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -52,12 +71,18 @@ public class FilmDbStorage implements FilmStorage {
 
         film.setId(keyHolder.getKey().longValue());
         replaceFilmGenres(film.getId(), film.getGenres());
+        readModel.refresh(film.getId());
+        changeLog.record(ChangeType.FILM_SAVED, film.getId(), 0);
         return getFilm(film.getId()).orElseThrow();
     }
 
     @Override
     public Film updateFilm(Film film) {
         validateFilm(film);
+        return transactionTemplate.execute(status -> rewriteFilm(film));
+    }
+
+    private Film rewriteFilm(Film film) {
         String sql = "UPDATE FILMS SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? WHERE id = ?";
 
         int rows = jdbcTemplate.update(sql,
@@ -72,81 +97,92 @@ public class FilmDbStorage implements FilmStorage {
         }
 
         replaceFilmGenres(film.getId(), film.getGenres());
+        readModel.refresh(film.getId());
+        changeLog.record(ChangeType.FILM_SAVED, film.getId(), 0);
         return getFilm(film.getId()).orElseThrow();
     }
 
     @Override
     public void removeFilm(Film film) {
         String sql = "DELETE FROM films WHERE id = ?";
-        jdbcTemplate.update(sql, film.getId());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(sql, film.getId());
+            changeLog.record(ChangeType.FILM_REMOVED, film.getId(), 0);
+        });
     }
 
     @Override
     public Collection<Film> getAllFilms() {
-        String sql = "SELECT * FROM films";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToFilm(rs));
+        return readModel.findAll();
     }
 
     @Override
     public Optional<Film> getFilm(long id) {
-        String sql = "SELECT * FROM films WHERE id = ?";
-        return Optional.ofNullable(jdbcTemplate.queryForObject(sql, (rs, rowNum) -> mapRowToFilm(rs), id));
+        return readModel.find(id);
     }
 
     @Override
     public Collection<Film> getTopFilms(int count) {
-        String sql = "SELECT f.* FROM films f " +
-                "LEFT JOIN likes l ON f.id = l.film_id " +
-                "GROUP BY f.id " +
-                "ORDER BY COUNT(l.user_id) DESC " +
-                "LIMIT ?";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToFilm(rs), count);
-    }
-
-    private Film mapRowToFilm(ResultSet rs) throws SQLException {
-        Film film = Film.builder()
-                .id(rs.getInt("id"))
-                .name(rs.getString("name"))
-                .description(rs.getString("description"))
-                .releaseDate(rs.getDate("release_date").toLocalDate())
-                .duration(rs.getInt("duration"))
-                .build();
-
-        int mpaId = rs.getInt("mpa_id");
-        if (!rs.wasNull()) {
-            String mpaSql = "SELECT * FROM mpa WHERE id = ?";
-            Mpa mpa = jdbcTemplate.queryForObject(mpaSql,
-                    (rsMpa, rowNum) -> Mpa.builder()
-                            .id(rsMpa.getInt("id"))
-                            .name(rsMpa.getString("name"))
-                            .description(rsMpa.getString("description"))
-                            .build(),
-                    mpaId);
-            film.setMpa(mpa);
-        }
+        return readModel.findTop(count);
+    }
 
-        String genresSql = "SELECT g.* FROM genres g " +
-                "JOIN film_genres fg ON g.id = fg.genre_id " +
-                "WHERE fg.film_id = ? " +
-                "ORDER BY g.id";
-        Set<Genre> genres = new LinkedHashSet<>(jdbcTemplate.query(genresSql,
-                (rsGenre, rowNum) -> Genre.builder()
-                        .id(rsGenre.getInt("id"))
-                        .name(rsGenre.getString("name"))
-                        .build(),
-                film.getId()));
-        film.setGenres(genres);
+    @Override
+    public Map<Long, Film> getFilms(Collection<Long> ids) {
+        return getFilms(ids, FilmField.ALL);
+    }
 
-        return film;
+    @Override
+    public Map<Long, Film> getFilms(Collection<Long> ids, Set<FilmField> fields) {
+        return readModel.findByIds(ids, fields).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+    }
+
+    // Считается по самой таблице лайков, а не по модели чтения: ею пользуется сверка статистики
+    @Override
+    public Map<Long, Integer> getLikeCounts() {
+        Map<Long, Integer> result = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, COUNT(*) AS likes FROM likes GROUP BY film_id",
+                rs -> {
+                    result.put(rs.getLong("film_id"), rs.getInt("likes"));
+                });
+        return result;
+    }
+
+    @Override
+    public Collection<Film> getAllFilms(Set<FilmField> fields) {
+        return readModel.findAll(fields);
+    }
+
+    @Override
+    public Optional<Film> getFilm(long id, Set<FilmField> fields) {
+        return readModel.find(id, fields);
+    }
+
+    @Override
+    public Collection<Film> getTopFilms(int count, Set<FilmField> fields) {
+        return readModel.findTop(count, fields);
     }
 
     public void addLike(long filmId, long userId) {
-        if (isLikeExists(filmId, userId)) {
-            throw new NotFoundException("Пользователь ставил лайк этому фильму");
-        }
+        groupCommit.execute(() -> {
+            if (isLikeExists(filmId, userId)) {
+                throw new NotFoundException("Пользователь ставил лайк этому фильму");
+            }
+
+            String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+            jdbcTemplate.update(sql, filmId, userId);
+            readModel.changeLikeCount(filmId, 1);
+            changeLog.record(ChangeType.LIKE_ADDED, filmId, userId);
+        });
+    }
 
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, filmId, userId);
+    @Override
+    public void forEachLikeSince(Instant since, BiConsumer<Long, Instant> consumer) {
+        jdbcTemplate.query("SELECT film_id, created_at FROM likes WHERE created_at >= ?",
+                rs -> {
+                    consumer.accept(rs.getLong("film_id"), rs.getTimestamp("created_at").toInstant());
+                },
+                Timestamp.from(since));
     }
 
     private boolean isLikeExists(long filmId, long userId) {
@@ -156,12 +192,16 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     public void removeLike(long filmId, long userId) {
-        if (!isLikeExists(filmId, userId)) {
-            throw new NotFoundException("Пользователь не ставил лайк этому фильму");
-        }
+        groupCommit.execute(() -> {
+            if (!isLikeExists(filmId, userId)) {
+                throw new NotFoundException("Пользователь не ставил лайк этому фильму");
+            }
 
-        String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+            String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+            jdbcTemplate.update(sql, filmId, userId);
+            readModel.changeLikeCount(filmId, -1);
+            changeLog.record(ChangeType.LIKE_REMOVED, filmId, userId);
+        });
     }
 
     private void replaceFilmGenres(long filmId, Set<Genre> genres) {
@@ -183,23 +223,7 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     private void validateFilm(Film film) {
-        if (film.getName() == null || film.getName().isBlank()) {
-            throw new ValidationException("Название фильма отсутствует!");
-        }
-        if (film.getDescription() == null || film.getDescription().isBlank() || film.getDescription().length() > DESCRIPTION_MAX_LENGTH) {
-            throw new ValidationException("Описание фильма отсутствует или слишком велико!");
-        }
-        if (film.getReleaseDate().isBefore(BIRTHDAY_CINEMA)) {
-            throw new ValidationException("Некорректная дата релиза!");
-        }
-        if (film.getDuration() <= 0) {
-            throw new ValidationException("Продолжительность фильма должна быть положительной!");
-        }
-
-        if (film.getMpa() == null) {
-            throw new ValidationException("Фильм должен иметь возрастной рейтинг!");
-        }
-
+        ModelValidator.validateFilm(film);
         if (film.getMpa().getId() != 0) {
             String countSql = "SELECT COUNT(*) FROM mpa WHERE id = ?";
             Integer count = jdbcTemplate.queryForObject(countSql, Integer.class, film.getMpa().getId());
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Денормализованная копия фильма: MPA, жанры и число лайков лежат в одной строке film_read_model,
+// поэтому чтение фильма - один поиск по первичному ключу.
+// Строка пересобирается из исходных таблиц при каждой записи фильма, число лайков меняется инкрементом.
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
+public class FilmReadModel {
+
+    private static final String COLUMNS = "film_id, name, description, release_date, duration, " +
+            "mpa_id, mpa_name, mpa_description, genre_ids, genre_names, like_count";
+
+    private static final String SOURCE_SQL = "SELECT f.id AS film_id, f.name, f.description, f.release_date, " +
+            "f.duration, f.mpa_id, m.name AS mpa_name, m.description AS mpa_description, " +
+            "COALESCE((SELECT LISTAGG(CAST(g.id AS VARCHAR), ',') WITHIN GROUP (ORDER BY g.id) " +
+            "    FROM film_genres fg JOIN genres g ON g.id = fg.genre_id WHERE fg.film_id = f.id), '') AS genre_ids, " +
+            "COALESCE((SELECT LISTAGG(g.name, '|') WITHIN GROUP (ORDER BY g.id) " +
+            "    FROM film_genres fg JOIN genres g ON g.id = fg.genre_id WHERE fg.film_id = f.id), '') AS genre_names, " +
+            "(SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id) AS like_count " +
+            "FROM films f LEFT JOIN mpa m ON m.id = f.mpa_id";
+
+    private static final int IN_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final RowMapper<Film> allFieldsMapper = filmRowMapper(FilmField.ALL);
+
+    private final RowMapper<Map.Entry<Film, Integer>> rowWithLikesMapper = (rs, rowNum) ->
+            Map.entry(allFieldsMapper.mapRow(rs, rowNum), rs.getInt("like_count"));
+
+    public void refresh(long filmId) {
+        jdbcTemplate.update("MERGE INTO film_read_model (" + COLUMNS + ") KEY (film_id) " +
+                SOURCE_SQL + " WHERE f.id = ?", filmId);
+    }
+
+    public void changeLikeCount(long filmId, int delta) {
+        jdbcTemplate.update("UPDATE film_read_model SET like_count = like_count + ? WHERE film_id = ?",
+                delta, filmId);
+    }
+
+    // Лайки пользователя удаляются каскадом вместе с ним, поэтому счётчики правим заранее
+    public void onUserRemoved(long userId) {
+        jdbcTemplate.update("UPDATE film_read_model SET like_count = like_count - 1 " +
+                "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?)", userId);
+    }
+
+    public void onUsersRemoved(Collection<Long> userIds) {
+        String placeholders = userIds.stream().map(id -> "?").collect(Collectors.joining(","));
+        List<Object> params = new ArrayList<>(userIds);
+        params.addAll(userIds);
+        jdbcTemplate.update("UPDATE film_read_model r SET like_count = like_count - " +
+                "(SELECT COUNT(*) FROM likes l WHERE l.film_id = r.film_id AND l.user_id IN (" + placeholders + ")) " +
+                "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id IN (" + placeholders + "))",
+                params.toArray());
+    }
+
+    public Optional<Film> find(long filmId) {
+        return find(filmId, FilmField.ALL);
+    }
+
+    public Optional<Film> find(long filmId, Set<FilmField> fields) {
+        return jdbcTemplate.query("SELECT " + columns(fields) + " FROM film_read_model WHERE film_id = ?",
+                        filmRowMapper(fields), filmId)
+                .stream().findFirst();
+    }
+
+    public List<Film> findAll() {
+        return findAll(FilmField.ALL);
+    }
+
+    public List<Film> findAll(Set<FilmField> fields) {
+        return jdbcTemplate.query("SELECT " + columns(fields) + " FROM film_read_model ORDER BY film_id",
+                filmRowMapper(fields));
+    }
+
+    public List<Film> findByIds(Collection<Long> filmIds, Set<FilmField> fields) {
+        List<Film> result = new ArrayList<>(filmIds.size());
+        List<Long> ids = new ArrayList<>(filmIds);
+        // Длинные списки режем на части, чтобы не упираться в размер IN (...)
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+            String placeholders = chunk.stream().map(id -> "?").collect(Collectors.joining(","));
+            result.addAll(jdbcTemplate.query("SELECT " + columns(fields) + " FROM film_read_model " +
+                    "WHERE film_id IN (" + placeholders + ")", filmRowMapper(fields), chunk.toArray()));
+        }
+        return result;
+    }
+
+    public List<Film> findTop(int count) {
+        return findTop(count, FilmField.ALL);
+    }
+
+    public List<Film> findTop(int count, Set<FilmField> fields) {
+        return jdbcTemplate.query("SELECT " + columns(fields) + " FROM film_read_model " +
+                "ORDER BY like_count DESC, film_id LIMIT ?", filmRowMapper(fields), count);
+    }
+
+    public int rebuild() {
+        jdbcTemplate.update("DELETE FROM film_read_model WHERE film_id NOT IN (SELECT id FROM films)");
+        return jdbcTemplate.update("MERGE INTO film_read_model (" + COLUMNS + ") KEY (film_id) " + SOURCE_SQL);
+    }
+
+    // Сравнивает read model с тем, что получилось бы из исходных таблиц, и возвращает id расходящихся фильмов
+    public List<Long> findDrift() {
+        Map<Long, Map.Entry<Film, Integer>> expected = jdbcTemplate.query(SOURCE_SQL, rowWithLikesMapper).stream()
+                .collect(Collectors.toMap(row -> row.getKey().getId(), Function.identity()));
+        Map<Long, Map.Entry<Film, Integer>> actual = jdbcTemplate
+                .query("SELECT * FROM film_read_model", rowWithLikesMapper).stream()
+                .collect(Collectors.toMap(row -> row.getKey().getId(), Function.identity()));
+
+        Set<Long> filmIds = new TreeSet<>(expected.keySet());
+        filmIds.addAll(actual.keySet());
+        return filmIds.stream()
+                .filter(filmId -> !Objects.equals(expected.get(filmId), actual.get(filmId)))
+                .collect(Collectors.toList());
+    }
+
+    // Читаем только колонки запрошенных полей: без жанров не тянем их строки, без описания - описание
+    private static String columns(Set<FilmField> fields) {
+        StringJoiner columns = new StringJoiner(", ");
+        columns.add("film_id");
+        for (FilmField field : fields) {
+            switch (field) {
+                case NAME -> columns.add("name");
+                case DESCRIPTION -> columns.add("description");
+                case RELEASE_DATE -> columns.add("release_date");
+                case DURATION -> columns.add("duration");
+                case GENRES -> columns.add("genre_ids").add("genre_names");
+                case MPA -> columns.add("mpa_id").add("mpa_name").add("mpa_description");
+                default -> {
+                }
+            }
+        }
+        return columns.toString();
+    }
+
+    private static RowMapper<Film> filmRowMapper(Set<FilmField> fields) {
+        return (rs, rowNum) -> {
+            Film film = Film.builder().id(rs.getLong("film_id")).build();
+            if (fields.contains(FilmField.NAME)) {
+                film.setName(rs.getString("name"));
+            }
+            if (fields.contains(FilmField.DESCRIPTION)) {
+                film.setDescription(rs.getString("description"));
+            }
+            if (fields.contains(FilmField.RELEASE_DATE)) {
+                film.setReleaseDate(rs.getDate("release_date").toLocalDate());
+            }
+            if (fields.contains(FilmField.DURATION)) {
+                film.setDuration(rs.getInt("duration"));
+            }
+            if (fields.contains(FilmField.GENRES)) {
+                film.setGenres(parseGenres(rs.getString("genre_ids"), rs.getString("genre_names")));
+            }
+            if (fields.contains(FilmField.MPA)) {
+                int mpaId = rs.getInt("mpa_id");
+                if (!rs.wasNull()) {
+                    film.setMpa(Mpa.builder()
+                            .id(mpaId)
+                            .name(rs.getString("mpa_name"))
+                            .description(rs.getString("mpa_description"))
+                            .build());
+                }
+            }
+            return film;
+        };
+    }
+
+    private static Set<Genre> parseGenres(String ids, String names) {
+        Set<Genre> genres = new LinkedHashSet<>();
+        if (ids == null || ids.isEmpty()) return genres;
+
+        String[] genreIds = ids.split(",");
+        String[] genreNames = names.split("\\|", -1);
+        for (int i = 0; i < genreIds.length; i++) {
+            genres.add(Genre.builder()
+                    .id(Integer.parseInt(genreIds[i]))
+                    .name(i < genreNames.length ? genreNames[i] : null)
+                    .build());
+        }
+        return genres;
+    }
+}
@@ -1,9 +1,14 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 public interface FilmStorage {
     Film addFilm(Film film);
@@ -18,7 +23,35 @@ public interface FilmStorage {
 
     Collection<Film> getTopFilms(int count);
 
+    // Фильмы по списку id одним запросом; отсутствующих id в результате нет
+    Map<Long, Film> getFilms(Collection<Long> ids);
+
+    // Число лайков каждого фильма, у которого они есть
+    Map<Long, Integer> getLikeCounts();
+
+    // Проекции по набору полей; хранилище может не читать остальные поля
+    default Collection<Film> getAllFilms(Set<FilmField> fields) {
+        return getAllFilms();
+    }
+
+    default Optional<Film> getFilm(long id, Set<FilmField> fields) {
+        return getFilm(id);
+    }
+
+    default Collection<Film> getTopFilms(int count, Set<FilmField> fields) {
+        return getTopFilms(count);
+    }
+
+    default Map<Long, Film> getFilms(Collection<Long> ids, Set<FilmField> fields) {
+        return getFilms(ids);
+    }
+
     void addLike(long filmId, long userId);
 
     void removeLike(long filmId, long userId);
+
+    // Обходит лайки, поставленные не раньше since: (id фильма, время лайка).
+    // Хранилище без времени лайков ничего не обходит
+    default void forEachLikeSince(Instant since, BiConsumer<Long, Instant> consumer) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,400 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.journal.JournalOperation;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.validation.ModelValidator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+// Фильмы хранятся неизменяемыми снимками, лайки - в неблокирующих множествах, разложенных по разделам
+// (LikePartitions). Лайки одного фильма ставятся параллельно под блокировкой чтения своей полосы,
+// обновление и удаление фильма берут блокировку записи.
+@Slf4j
+@Repository
+@Qualifier("inMemoryFilmStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class InMemoryFilmStorage implements FilmStorage, JournaledStorage {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final Set<JournalOperation> JOURNAL_OPERATIONS = EnumSet.of(JournalOperation.ADD_FILM,
+            JournalOperation.UPDATE_FILM, JournalOperation.REMOVE_FILM, JournalOperation.ADD_LIKE,
+            JournalOperation.REMOVE_LIKE);
+
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final StorageJournal journal;
+    private final LikePartitions likes;
+
+    private final AtomicLong idSequence = new AtomicLong();
+    private final Map<Long, Film> films = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock[] locks = createLocks();
+
+    private volatile Map<Integer, Mpa> mpaCache;
+    private volatile Map<Integer, Genre> genreCache;
+
+    public InMemoryFilmStorage(@Qualifier("mpaDbStorage") MpaStorage mpaStorage,
+                               @Qualifier("genreDbStorage") GenreStorage genreStorage,
+                               StorageJournal journal,
+                               @Value("${filmorate.storage.memory.like-partitions:8}") int likePartitions) {
+        this.mpaStorage = mpaStorage;
+        this.genreStorage = genreStorage;
+        this.journal = journal;
+        this.likes = new LikePartitions(likePartitions, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        ModelValidator.validateFilm(film);
+        Film stored = journal.mutate(appender -> {
+            Film snapshot = snapshotOf(film, idSequence.incrementAndGet());
+            Lock lock = lockFor(snapshot.getId()).writeLock();
+            lock.lock();
+            try {
+                putFilm(snapshot);
+                appender.append(JournalRecord.of(JournalOperation.ADD_FILM, out -> writeFilm(out, snapshot)));
+            } finally {
+                lock.unlock();
+            }
+            return snapshot;
+        });
+        film.setId(stored.getId());
+        return copyOf(stored);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        ModelValidator.validateFilm(film);
+        Film stored = snapshotOf(film, film.getId());
+
+        journal.mutate(appender -> {
+            Lock lock = lockFor(film.getId()).writeLock();
+            lock.lock();
+            try {
+                if (!films.containsKey(film.getId())) {
+                    throw new NotFoundException("Фильм с id " + film.getId() + " не найден!");
+                }
+                putFilm(stored);
+                appender.append(JournalRecord.of(JournalOperation.UPDATE_FILM, out -> writeFilm(out, stored)));
+            } finally {
+                lock.unlock();
+            }
+            return stored;
+        });
+        return copyOf(stored);
+    }
+
+    @Override
+    public void removeFilm(Film film) {
+        journal.mutate(appender -> {
+            Lock lock = lockFor(film.getId()).writeLock();
+            lock.lock();
+            try {
+                if (deleteFilm(film.getId())) {
+                    appender.append(JournalRecord.of(JournalOperation.REMOVE_FILM,
+                            out -> out.writeLong(film.getId())));
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return films.values().stream()
+                .sorted(Comparator.comparingLong(Film::getId))
+                .map(this::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<Film> getFilm(long id) {
+        return Optional.ofNullable(films.get(id)).map(this::copyOf);
+    }
+
+    @Override
+    public Map<Long, Film> getFilms(Collection<Long> ids) {
+        Map<Long, Film> result = new HashMap<>();
+        for (Long id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                result.put(id, copyOf(film));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts() {
+        Map<Long, Integer> result = new HashMap<>();
+        likes.forEachCount((filmId, count) -> {
+            if (count > 0) {
+                result.put(filmId, count);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public Collection<Film> getTopFilms(int count) {
+        List<long[]> ordered = likes.top(count);
+        List<Film> result = new ArrayList<>(ordered.size());
+        for (long[] entry : ordered) {
+            Film film = films.get(entry[0]);
+            if (film != null) {
+                result.add(copyOf(film));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void addLike(long filmId, long userId) {
+        journal.mutate(appender -> {
+            Lock lock = lockFor(filmId).readLock();
+            lock.lock();
+            try {
+                boolean added = likes.add(filmId, userId)
+                        .orElseThrow(() -> new NotFoundException("Фильм не найден!"));
+                if (!added) {
+                    throw new NotFoundException("Пользователь ставил лайк этому фильму");
+                }
+                appender.append(likeRecord(JournalOperation.ADD_LIKE, filmId, userId));
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void removeLike(long filmId, long userId) {
+        journal.mutate(appender -> {
+            Lock lock = lockFor(filmId).readLock();
+            lock.lock();
+            try {
+                if (!likes.remove(filmId, userId)) {
+                    throw new NotFoundException("Пользователь не ставил лайк этому фильму");
+                }
+                appender.append(likeRecord(JournalOperation.REMOVE_LIKE, filmId, userId));
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public String getJournalSection() {
+        return "films";
+    }
+
+    @Override
+    public boolean supports(JournalOperation operation) {
+        return JOURNAL_OPERATIONS.contains(operation);
+    }
+
+    @Override
+    public void replay(JournalOperation operation, DataInput in) throws IOException {
+        switch (operation) {
+            case ADD_FILM, UPDATE_FILM -> putFilm(readFilm(in));
+            case REMOVE_FILM -> deleteFilm(in.readLong());
+            case ADD_LIKE -> likes.replayAdd(in.readLong(), in.readLong());
+            case REMOVE_LIKE -> likes.remove(in.readLong(), in.readLong());
+            default -> throw new IllegalStateException("Операция " + operation + " не относится к фильмам");
+        }
+    }
+
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        out.writeLong(idSequence.get());
+        out.writeInt(films.size());
+        for (Film film : films.values()) {
+            writeFilm(out, film);
+            Set<Long> filmLikes = Objects.requireNonNullElse(likes.likers(film.getId()), Set.of());
+            long[] userIds = filmLikes.stream().mapToLong(Long::longValue).toArray();
+            out.writeInt(userIds.length);
+            for (long userId : userIds) {
+                out.writeLong(userId);
+            }
+        }
+    }
+
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        films.clear();
+        likes.clear();
+        idSequence.set(in.readLong());
+        int filmCount = in.readInt();
+        for (int i = 0; i < filmCount; i++) {
+            Film film = readFilm(in);
+            putFilm(film);
+            int likeCount = in.readInt();
+            for (int j = 0; j < likeCount; j++) {
+                likes.replayAdd(film.getId(), in.readLong());
+            }
+        }
+        // Снимок не зависит от числа разделов: смена filmorate.storage.memory.like-partitions
+        // с перезапуском перераскладывает лайки здесь, до приёма запросов
+        log.info("Лайки фильмов разложены по {} разделам: {}", likes.partitionCount(),
+                Arrays.toString(likes.partitionLikes()));
+    }
+
+    private void putFilm(Film film) {
+        films.put(film.getId(), film);
+        likes.register(film.getId());
+        idSequence.accumulateAndGet(film.getId(), Math::max);
+    }
+
+    private boolean deleteFilm(long filmId) {
+        likes.unregister(filmId);
+        return films.remove(filmId) != null;
+    }
+
+    private static JournalRecord likeRecord(JournalOperation operation, long filmId, long userId) {
+        return JournalRecord.of(operation, out -> {
+            out.writeLong(filmId);
+            out.writeLong(userId);
+        });
+    }
+
+    private static void writeFilm(DataOutput out, Film film) throws IOException {
+        out.writeLong(film.getId());
+        out.writeUTF(film.getName());
+        out.writeUTF(film.getDescription());
+        out.writeLong(film.getReleaseDate().toEpochDay());
+        out.writeInt(film.getDuration());
+        out.writeInt(film.getMpa() == null ? 0 : film.getMpa().getId());
+        out.writeByte(film.getGenres().size());
+        for (Genre genre : film.getGenres()) {
+            out.writeInt(genre.getId());
+        }
+    }
+
+    private Film readFilm(DataInput in) throws IOException {
+        Film film = Film.builder()
+                .id(in.readLong())
+                .name(in.readUTF())
+                .description(in.readUTF())
+                .releaseDate(LocalDate.ofEpochDay(in.readLong()))
+                .duration(in.readInt())
+                .mpa(Mpa.builder().id(in.readInt()).build())
+                .build();
+        int genreCount = in.readUnsignedByte();
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (int i = 0; i < genreCount; i++) {
+            genres.add(Genre.builder().id(in.readInt()).build());
+        }
+        film.setGenres(genres);
+        return snapshotOf(film, film.getId());
+    }
+
+    private Film snapshotOf(Film film, long id) {
+        Set<Genre> genres = new LinkedHashSet<>();
+        if (film.getGenres() != null) {
+            film.getGenres().stream()
+                    .filter(genre -> genre != null && genre.getId() > 0)
+                    .map(Genre::getId)
+                    .distinct()
+                    .sorted()
+                    .forEach(genreId -> genres.add(resolveGenre(genreId)));
+        }
+
+        return Film.builder()
+                .id(id)
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(film.getMpa().getId() != 0 ? resolveMpa(film.getMpa().getId()) : null)
+                .genres(Collections.unmodifiableSet(genres))
+                .build();
+    }
+
+    private Film copyOf(Film film) {
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (Genre genre : film.getGenres()) {
+            genres.add(Genre.builder().id(genre.getId()).name(genre.getName()).build());
+        }
+        Mpa mpa = film.getMpa() == null ? null : Mpa.builder()
+                .id(film.getMpa().getId())
+                .name(film.getMpa().getName())
+                .description(film.getMpa().getDescription())
+                .build();
+
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(mpa)
+                .genres(genres)
+                .build();
+    }
+
+    private Mpa resolveMpa(int id) {
+        Map<Integer, Mpa> cache = mpaCache;
+        if (cache == null) {
+            cache = mpaStorage.findAllMpa().stream()
+                    .collect(Collectors.toUnmodifiableMap(Mpa::getId, mpa -> mpa));
+            mpaCache = cache;
+        }
+        Mpa mpa = cache.get(id);
+        if (mpa == null) {
+            throw new NotFoundException("Возрастной рейтинг с id " + id + " не найден!");
+        }
+        return mpa;
+    }
+
+    private Genre resolveGenre(int id) {
+        Map<Integer, Genre> cache = genreCache;
+        if (cache == null) {
+            cache = genreStorage.findAllGenres().stream()
+                    .collect(Collectors.toUnmodifiableMap(Genre::getId, genre -> genre));
+            genreCache = cache;
+        }
+        Genre genre = cache.get(id);
+        if (genre == null) {
+            throw new NotFoundException("Жанр не найден");
+        }
+        return genre;
+    }
+
+    private ReentrantReadWriteLock lockFor(long filmId) {
+        return locks[(int) (filmId & (LOCK_STRIPES - 1))];
+    }
+
+    private static ReentrantReadWriteLock[] createLocks() {
+        ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        return stripes;
+    }
+}
@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+// Лайки хранилища в памяти, разложенные по разделам по хешу id фильма.
+// У раздела своя таблица фильмов и свой счётчик лайков, так что записи в разные разделы не делят структуры.
+// Топ считается по разделам параллельно в ForkJoinPool (каждый раздел - свою кучу на count фильмов),
+// затем частичные топы сливаются. Маленький каталог считается в вызывающем потоке.
+// Число разделов задаётся при старте: раскладка не сохраняется, а строится заново при чтении снимка и журнала.
+final class LikePartitions {
+    // Ниже этого числа фильмов параллельный подсчёт дороже последовательного
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    // Порядок топа: больше лайков выше, при равенстве выше меньший id
+    private static final Comparator<long[]> BY_POPULARITY = Comparator.<long[]>comparingLong(entry -> entry[1])
+            .thenComparing(entry -> -entry[0]);
+
+    private final Partition[] partitions;
+    private final ForkJoinPool pool;
+
+    LikePartitions(int partitionCount, ForkJoinPool pool) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Число разделов лайков должно быть положительным");
+        }
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition();
+        }
+        this.pool = pool;
+    }
+
+    int partitionCount() {
+        return partitions.length;
+    }
+
+    private int partitionOf(long filmId) {
+        // Перемешиваем биты: подряд идущие id иначе ложатся в разделы лесенкой
+        return Math.floorMod(Long.hashCode(filmId * 0x9E3779B97F4A7C15L), partitions.length);
+    }
+
+    void register(long filmId) {
+        partition(filmId).likers.computeIfAbsent(filmId, id -> ConcurrentHashMap.newKeySet());
+    }
+
+    void unregister(long filmId) {
+        Partition partition = partition(filmId);
+        Set<Long> likers = partition.likers.remove(filmId);
+        if (likers != null) {
+            partition.likes.add(-likers.size());
+        }
+    }
+
+    // null, если фильм не зарегистрирован
+    Set<Long> likers(long filmId) {
+        Set<Long> likers = partition(filmId).likers.get(filmId);
+        return likers == null ? null : Collections.unmodifiableSet(likers);
+    }
+
+    // Пусто, если фильма нет; false, если этот пользователь уже ставил лайк
+    Optional<Boolean> add(long filmId, long userId) {
+        Partition partition = partition(filmId);
+        Set<Long> likers = partition.likers.get(filmId);
+        if (likers == null) return Optional.empty();
+        boolean added = likers.add(userId);
+        if (added) partition.likes.increment();
+        return Optional.of(added);
+    }
+
+    boolean remove(long filmId, long userId) {
+        Partition partition = partition(filmId);
+        Set<Long> likers = partition.likers.get(filmId);
+        if (likers == null || !likers.remove(userId)) return false;
+        partition.likes.decrement();
+        return true;
+    }
+
+    // Для восстановления из журнала: лайк фильма, которого ещё нет, регистрирует фильм
+    void replayAdd(long filmId, long userId) {
+        Partition partition = partition(filmId);
+        if (partition.likers.computeIfAbsent(filmId, id -> ConcurrentHashMap.newKeySet()).add(userId)) {
+            partition.likes.increment();
+        }
+    }
+
+    void clear() {
+        for (Partition partition : partitions) {
+            partition.likers.clear();
+            partition.likes.reset();
+        }
+    }
+
+    void forEachCount(BiConsumer<Long, Integer> consumer) {
+        for (Partition partition : partitions) {
+            partition.likers.forEach((filmId, likers) -> consumer.accept(filmId, likers.size()));
+        }
+    }
+
+    // Лайков в каждом разделе: перекос виден до того, как менять число разделов
+    long[] partitionLikes() {
+        long[] result = new long[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            result[i] = partitions[i].likes.sum();
+        }
+        return result;
+    }
+
+    // Пары [id фильма, лайки] по убыванию популярности
+    List<long[]> top(int count) {
+        if (count <= 0) return List.of();
+
+        List<long[]> merged;
+        if (partitions.length == 1 || size() < PARALLEL_THRESHOLD) {
+            merged = new ArrayList<>();
+            for (Partition partition : partitions) {
+                merged.addAll(partition.top(count));
+            }
+        } else {
+            List<ForkJoinTask<List<long[]>>> tasks = new ArrayList<>(partitions.length);
+            for (Partition partition : partitions) {
+                tasks.add(pool.submit(() -> partition.top(count)));
+            }
+            merged = new ArrayList<>();
+            for (ForkJoinTask<List<long[]>> task : tasks) {
+                merged.addAll(task.join());
+            }
+        }
+        merged.sort(BY_POPULARITY.reversed());
+        return merged.size() > count ? merged.subList(0, count) : merged;
+    }
+
+    private int size() {
+        int size = 0;
+        for (Partition partition : partitions) {
+            size += partition.likers.size();
+        }
+        return size;
+    }
+
+    private Partition partition(long filmId) {
+        return partitions[partitionOf(filmId)];
+    }
+
+    private static final class Partition {
+        private final Map<Long, Set<Long>> likers = new ConcurrentHashMap<>();
+        private final LongAdder likes = new LongAdder();
+
+        // Частичная сортировка: в куче держим не больше count самых популярных фильмов раздела
+        private List<long[]> top(int count) {
+            PriorityQueue<long[]> top = new PriorityQueue<>(Math.min(count, likers.size()) + 1, BY_POPULARITY);
+            likers.forEach((filmId, filmLikers) -> {
+                top.add(new long[]{filmId, filmLikers.size()});
+                if (top.size() > count) {
+                    top.poll();
+                }
+            });
+            return new ArrayList<>(top);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.util.Arrays;
+
+public enum JournalOperation {
+    ADD_FILM(1),
+    UPDATE_FILM(2),
+    REMOVE_FILM(3),
+    ADD_LIKE(4),
+    REMOVE_LIKE(5),
+    ADD_USER(11),
+    UPDATE_USER(12),
+    REMOVE_USER(13),
+    ADD_FRIEND(14),
+    UPDATE_FRIEND_STATUS(15),
+    REMOVE_FRIEND(16);
+
+    private static final JournalOperation[] BY_CODE = new JournalOperation[32];
+
+    static {
+        Arrays.stream(values()).forEach(op -> BY_CODE[op.code] = op);
+    }
+
+    private final byte code;
+
+    JournalOperation(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static JournalOperation fromCode(byte code) {
+        JournalOperation op = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (op == null) {
+            throw new IllegalStateException("Неизвестная операция журнала: " + code);
+        }
+        return op;
+    }
+}
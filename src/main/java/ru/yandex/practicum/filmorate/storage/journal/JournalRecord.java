@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+@Getter
+public class JournalRecord {
+    private final JournalOperation operation;
+    private final byte[] payload;
+
+    private JournalRecord(JournalOperation operation, byte[] payload) {
+        this.operation = operation;
+        this.payload = payload;
+    }
+
+    public static JournalRecord of(JournalOperation operation, Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new JournalRecord(operation, bytes.toByteArray());
+    }
+
+    @FunctionalInterface
+    public interface Body {
+        void write(DataOutput out) throws IOException;
+    }
+}
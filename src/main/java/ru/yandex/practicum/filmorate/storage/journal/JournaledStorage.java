@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Хранилище в памяти, состояние которого восстанавливается из снимка и хвоста журнала
+public interface JournaledStorage {
+    String getJournalSection();
+
+    boolean supports(JournalOperation operation);
+
+    void replay(JournalOperation operation, DataInput in) throws IOException;
+
+    void writeSnapshot(DataOutput out) throws IOException;
+
+    void readSnapshot(DataInput in) throws IOException;
+}
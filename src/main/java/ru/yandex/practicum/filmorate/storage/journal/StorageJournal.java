@@ -0,0 +1,573 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал изменений хранилищ в памяти.
+// Запись сегмента: [длина][seq][операция][данные][crc32], длина считает seq, операцию и данные.
+// Записи сбрасываются на диск отдельным потоком пачками: один force() на всех попутчиков в окне группировки.
+// Снимок пишется через отображаемый в память файл, после чего сегменты до снимка удаляются.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class StorageJournal implements SmartInitializingSingleton, DisposableBean {
+
+    private static final int SNAPSHOT_MAGIC = 0x464D534E;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER = Integer.BYTES + Long.BYTES + Byte.BYTES;
+    private static final int MAX_BATCH = 1024;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final long MAP_CHUNK = 64L << 20;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long groupCommitWindowNanos;
+    private final ObjectProvider<JournaledStorage> storageProvider;
+
+    private final ReentrantReadWriteLock cutLock = new ReentrantReadWriteLock();
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Object appendMonitor = new Object();
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableChanged = durableLock.newCondition();
+
+    private long lastSeq;
+    private volatile long durableSeq;
+    private volatile IOException failure;
+    private volatile boolean running;
+    private volatile Path currentSegment;
+    private List<JournaledStorage> storages = List.of();
+    private FileChannel channel;
+    private Thread writer;
+    private long mapChunk = MAP_CHUNK;
+
+    public StorageJournal(@Value("${filmorate.storage.journal.enabled:true}") boolean enabled,
+                          @Value("${filmorate.storage.journal.dir:./db/journal}") Path directory,
+                          @Value("${filmorate.storage.journal.group-commit-window-us:200}") long groupCommitWindowMicros,
+                          ObjectProvider<JournaledStorage> storageProvider) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.groupCommitWindowNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitWindowMicros);
+        this.storageProvider = storageProvider;
+    }
+
+    // Для тестов: мелкие куски, чтобы части снимка попадали на их границы
+    void setMapChunk(long mapChunk) {
+        this.mapChunk = mapChunk;
+    }
+
+    public static StorageJournal disabled() {
+        return new StorageJournal(false, null, 0, null);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled) {
+            recover(storageProvider.orderedStream().collect(Collectors.toList()));
+        }
+    }
+
+    // Выполняет изменение под блокировкой среза и дожидается сброса его записей на диск.
+    // Запись в журнал нужно делать внутри той же блокировки сущности, что и само изменение,
+    // тогда порядок записей в журнале совпадает с порядком изменений в памяти.
+    // После ошибки записи журнала изменения отклоняются до того, как тронут память: иначе они были бы
+    // видны до перезапуска и пропали бы после него.
+    public <T> T mutate(Mutation<T> mutation) {
+        if (!enabled) {
+            return mutation.apply(record -> { });
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Журнал хранилища недоступен", failure);
+        }
+
+        long[] last = new long[1];
+        T result;
+        Lock lock = cutLock.readLock();
+        lock.lock();
+        try {
+            result = mutation.apply(record -> last[0] = append(record));
+        } finally {
+            lock.unlock();
+        }
+        if (last[0] > 0) {
+            awaitDurable(last[0]);
+        }
+        return result;
+    }
+
+    public void recover(List<JournaledStorage> journaledStorages) {
+        long started = System.nanoTime();
+        storages = List.copyOf(journaledStorages);
+        try {
+            Files.createDirectories(directory);
+            long snapshotSeq = loadSnapshot();
+            long last = snapshotSeq;
+            long replayed = 0;
+            for (Path segment : listSegments()) {
+                long[] result = replaySegment(segment, snapshotSeq);
+                last = Math.max(last, result[0]);
+                replayed += result[1];
+            }
+            lastSeq = last;
+            durableSeq = last;
+            openSegment(last + 1);
+            log.info("Хранилища восстановлены: снимок до seq {}, повторено записей журнала {}, за {} мс",
+                    snapshotSeq, replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить хранилища из журнала", e);
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "storage-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.storage.journal.snapshot-interval-ms:300000}",
+            initialDelayString = "${filmorate.storage.journal.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!enabled || !running) return;
+
+        long seq;
+        Map<String, byte[]> sections = new LinkedHashMap<>();
+        // Снимок должен точно соответствовать seq среза, поэтому хранилища сериализуются в память
+        // под блокировкой записи: изменения ждут всё время сериализации, а не только отметку seq.
+        // Запись файла снимка и удаление сегментов идут уже без блокировки.
+        Lock lock = cutLock.writeLock();
+        lock.lock();
+        try {
+            synchronized (appendMonitor) {
+                seq = lastSeq;
+                queue.add(Entry.rotate(seq + 1));
+            }
+            for (JournaledStorage storage : storages) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(bytes)) {
+                    storage.writeSnapshot(out);
+                }
+                sections.put(storage.getJournalSection(), bytes.toByteArray());
+            }
+        } catch (IOException e) {
+            log.error("Не удалось сериализовать снимок хранилищ", e);
+            return;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writeSnapshotFile(seq, sections);
+            deleteSegmentsBefore(seq + 1);
+            log.info("Снимок хранилищ записан до seq {}", seq);
+        } catch (IOException e) {
+            log.error("Не удалось записать снимок хранилищ", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (!running) return;
+        snapshot();
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть сегмент журнала: {}", e.getMessage());
+        }
+    }
+
+    private long append(JournalRecord record) {
+        synchronized (appendMonitor) {
+            long seq = ++lastSeq;
+            queue.add(Entry.record(seq, record));
+            return seq;
+        }
+    }
+
+    private void awaitDurable(long seq) {
+        durableLock.lock();
+        try {
+            while (durableSeq < seq && failure == null) {
+                durableChanged.awaitUninterruptibly();
+            }
+        } finally {
+            durableLock.unlock();
+        }
+        if (durableSeq < seq) {
+            throw new IllegalStateException("Журнал хранилища недоступен", failure);
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                collectBatch(batch);
+                if (failure == null) {
+                    writeBatch(batch, buffer);
+                }
+            } catch (IOException e) {
+                log.error("Ошибка записи журнала хранилища", e);
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+                signalDurable();
+            }
+        }
+    }
+
+    // Групповая фиксация: ждём попутчиков не дольше окна, затем один force() на всю пачку
+    private void collectBatch(List<Entry> batch) throws InterruptedException {
+        queue.drainTo(batch, MAX_BATCH - batch.size());
+        long deadline = System.nanoTime() + groupCommitWindowNanos;
+        while (batch.size() < MAX_BATCH) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) break;
+            Entry next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+        }
+    }
+
+    private void writeBatch(List<Entry> batch, ByteBuffer buffer) throws IOException {
+        long lastWritten = 0;
+        CRC32 crc = new CRC32();
+        for (Entry entry : batch) {
+            if (entry.isRotate()) {
+                flush(buffer);
+                channel.force(false);
+                markDurable(lastWritten);
+                channel.close();
+                openSegment(entry.getSeq());
+                continue;
+            }
+
+            byte[] payload = entry.getPayload();
+            int size = RECORD_HEADER + payload.length + Integer.BYTES;
+            if (buffer.remaining() < size) {
+                flush(buffer);
+            }
+            ByteBuffer target = size <= buffer.capacity() ? buffer : ByteBuffer.allocate(size);
+            int start = target.position();
+            target.putInt(Long.BYTES + Byte.BYTES + payload.length);
+            target.putLong(entry.getSeq());
+            target.put(entry.getOperation().getCode());
+            target.put(payload);
+            crc.reset();
+            crc.update(target.duplicate().flip().position(start + Integer.BYTES));
+            target.putInt((int) crc.getValue());
+            if (target != buffer) {
+                flush(target);
+            }
+            lastWritten = entry.getSeq();
+        }
+        flush(buffer);
+        channel.force(false);
+        markDurable(lastWritten);
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void markDurable(long seq) {
+        if (seq > durableSeq) {
+            durableSeq = seq;
+        }
+    }
+
+    private void signalDurable() {
+        durableLock.lock();
+        try {
+            durableChanged.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void openSegment(long startSeq) throws IOException {
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, startSeq, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        currentSegment = segment;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(StorageJournal::segmentStart))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void deleteSegmentsBefore(long startSeq) throws IOException {
+        for (Path segment : listSegments()) {
+            if (segmentStart(segment) < startSeq && !segment.equals(currentSegment)) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    // Возвращает максимальный seq и количество применённых записей.
+    // Недописанная или повреждённая запись в конце сегмента отрезается.
+    private long[] replaySegment(Path segment, long snapshotSeq) throws IOException {
+        long maxSeq = 0;
+        long applied = 0;
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = in.size();
+            DataInputStream data = new DataInputStream(new BufferedInputStream(Channels.newInputStream(in), 1 << 16));
+            while (validLength + Integer.BYTES <= fileSize) {
+                int length = data.readInt();
+                if (length < Long.BYTES + Byte.BYTES || validLength + Integer.BYTES + length + Integer.BYTES > fileSize) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                data.readFully(body);
+                int storedCrc = data.readInt();
+                crc.reset();
+                crc.update(body);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+                validLength += Integer.BYTES + length + Integer.BYTES;
+
+                ByteBuffer record = ByteBuffer.wrap(body);
+                long seq = record.getLong();
+                JournalOperation operation = JournalOperation.fromCode(record.get());
+                maxSeq = Math.max(maxSeq, seq);
+                if (seq <= snapshotSeq) continue;
+
+                DataInput payload = new DataInputStream(new ByteArrayInputStream(body, record.position(),
+                        body.length - record.position()));
+                storageFor(operation).replay(operation, payload);
+                applied++;
+            }
+            if (validLength < fileSize) {
+                log.warn("Сегмент {} обрезан с {} до {} байт: недописанная запись", segment, fileSize, validLength);
+                in.truncate(validLength);
+            }
+        }
+        return new long[]{maxSeq, applied};
+    }
+
+    private JournaledStorage storageFor(JournalOperation operation) {
+        for (JournaledStorage storage : storages) {
+            if (storage.supports(operation)) {
+                return storage;
+            }
+        }
+        throw new IllegalStateException("Нет хранилища для операции журнала " + operation);
+    }
+
+    private void writeSnapshotFile(long seq, Map<String, byte[]> sections) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(header)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(seq);
+            out.writeInt(sections.size());
+        }
+
+        List<byte[]> parts = new ArrayList<>();
+        parts.add(header.toByteArray());
+        for (Map.Entry<String, byte[]> section : sections.entrySet()) {
+            ByteArrayOutputStream sectionHeader = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(sectionHeader)) {
+                out.writeUTF(section.getKey());
+                out.writeInt(section.getValue().length);
+            }
+            parts.add(sectionHeader.toByteArray());
+            parts.add(section.getValue());
+        }
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        for (byte[] part : parts) {
+            crc.update(part);
+            size += part.length;
+        }
+        // Контрольная сумма - такая же часть, как остальные: она может оказаться на границе отображаемых кусков
+        parts.add(ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array());
+        size += Integer.BYTES;
+
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        Files.deleteIfExists(temporary);
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long position = 0;
+            Iterator<byte[]> iterator = parts.iterator();
+            byte[] part = iterator.next();
+            int offset = 0;
+            while (position < size) {
+                long chunk = Math.min(mapChunk, size - position);
+                MappedByteBuffer mapped = out.map(FileChannel.MapMode.READ_WRITE, position, chunk);
+                while (mapped.hasRemaining() && part != null) {
+                    int length = Math.min(part.length - offset, mapped.remaining());
+                    mapped.put(part, offset, length);
+                    offset += length;
+                    if (offset == part.length) {
+                        part = iterator.hasNext() ? iterator.next() : null;
+                        offset = 0;
+                    }
+                }
+                mapped.force();
+                position += chunk;
+            }
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private long loadSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) return 0;
+
+        try (FileChannel in = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Снимок больше 2 ГБ не поддерживается");
+            }
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(mapped.duplicate().limit((int) size - Integer.BYTES));
+            if ((int) crc.getValue() != mapped.getInt((int) size - Integer.BYTES)) {
+                throw new IOException("Контрольная сумма снимка не совпадает: " + snapshot);
+            }
+
+            DataInputStream data = new DataInputStream(new ByteBufferInputStream(mapped));
+            if (data.readInt() != SNAPSHOT_MAGIC || data.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Неизвестный формат снимка: " + snapshot);
+            }
+            long seq = data.readLong();
+            int sectionCount = data.readInt();
+            Map<String, JournaledStorage> bySection = storages.stream()
+                    .collect(Collectors.toMap(JournaledStorage::getJournalSection, storage -> storage));
+            for (int i = 0; i < sectionCount; i++) {
+                String name = data.readUTF();
+                int length = data.readInt();
+                ByteBuffer section = mapped.slice(mapped.position(), length);
+                mapped.position(mapped.position() + length);
+                JournaledStorage storage = bySection.get(name);
+                if (storage != null) {
+                    storage.readSnapshot(new DataInputStream(new ByteBufferInputStream(section)));
+                }
+            }
+            return seq;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Mutation<T> {
+        T apply(Appender appender);
+    }
+
+    @FunctionalInterface
+    public interface Appender {
+        void append(JournalRecord record);
+    }
+
+    private static final class Entry {
+        private final long seq;
+        private final JournalRecord record;
+
+        private Entry(long seq, JournalRecord record) {
+            this.seq = seq;
+            this.record = record;
+        }
+
+        static Entry record(long seq, JournalRecord record) {
+            return new Entry(seq, record);
+        }
+
+        static Entry rotate(long nextSeq) {
+            return new Entry(nextSeq, null);
+        }
+
+        boolean isRotate() {
+            return record == null;
+        }
+
+        long getSeq() {
+            return seq;
+        }
+
+        JournalOperation getOperation() {
+            return record.getOperation();
+        }
+
+        byte[] getPayload() {
+            return record.getPayload();
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FriendshipState;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.journal.JournalOperation;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+import ru.yandex.practicum.filmorate.validation.ModelValidator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+// Дружба хранится в двух индексах: исходящие заявки со статусом и входящие заявки.
+// Любая операция над парой пользователей берёт блокировки обеих полос в фиксированном порядке,
+// поэтому встречные заявки и удаление пользователя не перемешиваются.
+@Repository
+@RequiredArgsConstructor
+@Qualifier("inMemoryUserStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
+public class InMemoryUserStorage implements UserStorage, JournaledStorage {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final Set<JournalOperation> JOURNAL_OPERATIONS = EnumSet.of(JournalOperation.ADD_USER,
+            JournalOperation.UPDATE_USER, JournalOperation.REMOVE_USER, JournalOperation.ADD_FRIEND,
+            JournalOperation.UPDATE_FRIEND_STATUS, JournalOperation.REMOVE_FRIEND);
+
+    private final StorageJournal journal;
+
+    private final AtomicLong idSequence = new AtomicLong();
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, Boolean>> friends = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> followers = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = createLocks();
+
+    @Override
+    public User addUser(User user) {
+        ModelValidator.validateUser(user);
+        return journal.mutate(appender -> {
+            long id = idSequence.incrementAndGet();
+            user.setId(id);
+            User stored = copyOf(user);
+            ReentrantLock lock = lockFor(id);
+            lock.lock();
+            try {
+                putUser(stored);
+                appender.append(JournalRecord.of(JournalOperation.ADD_USER, out -> writeUser(out, stored)));
+            } finally {
+                lock.unlock();
+            }
+            return user;
+        });
+    }
+
+    @Override
+    public User updateUser(User user) {
+        ModelValidator.validateUser(user);
+        if (user.getId() == null) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+
+        User stored = copyOf(user);
+        journal.mutate(appender -> {
+            ReentrantLock lock = lockFor(stored.getId());
+            lock.lock();
+            try {
+                if (!users.containsKey(stored.getId())) {
+                    throw new NotFoundException("Пользователь не найден");
+                }
+                putUser(stored);
+                appender.append(JournalRecord.of(JournalOperation.UPDATE_USER, out -> writeUser(out, stored)));
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        });
+        return user;
+    }
+
+    @Override
+    public void removeUser(User user) {
+        long userId = user.getId();
+        journal.mutate(appender -> {
+            while (true) {
+                Set<Long> related = relatedUsers(userId);
+                List<ReentrantLock> acquired = lockAll(userId, related);
+                try {
+                    // Пока брали блокировки, могла появиться связь с пользователем из незахваченной полосы
+                    if (!related.containsAll(relatedUsers(userId))) {
+                        continue;
+                    }
+                    if (!deleteUser(userId)) {
+                        throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+                    }
+                    appender.append(JournalRecord.of(JournalOperation.REMOVE_USER, out -> out.writeLong(userId)));
+                    return null;
+                } finally {
+                    acquired.forEach(ReentrantLock::unlock);
+                }
+            }
+        });
+    }
+
+    @Override
+    public int removeUsers(Collection<Long> ids) {
+        int removed = 0;
+        for (Long id : ids) {
+            try {
+                removeUser(User.builder().id(id).build());
+                removed++;
+            } catch (NotFoundException ignore) {
+                // уже удалён
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Optional<User> getUser(long id) {
+        return Optional.ofNullable(users.get(id)).map(this::copyOf);
+    }
+
+    @Override
+    public Map<Long, User> getUsers(Collection<Long> ids) {
+        Map<Long, User> result = new HashMap<>();
+        for (Long id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.put(id, copyOf(user));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return users.values().stream()
+                .sorted(Comparator.comparingLong(User::getId))
+                .map(this::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void addFriend(long userId, long friendId) {
+        journal.mutate(appender -> {
+            List<ReentrantLock> acquired = lockAll(userId, Set.of(friendId));
+            try {
+                if (!users.containsKey(userId) || !users.containsKey(friendId)) {
+                    throw new NotFoundException("Пользователь не найден");
+                }
+                if (!putFriend(userId, friendId, false)) {
+                    throw new ValidationException("Пользователь уже добавлен в друзья");
+                }
+                appender.append(friendRecord(JournalOperation.ADD_FRIEND, userId, friendId));
+            } finally {
+                acquired.forEach(ReentrantLock::unlock);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public FriendshipState createFriendship(long userId, long friendId) {
+        return journal.mutate(appender -> {
+            List<ReentrantLock> acquired = lockAll(userId, Set.of(friendId));
+            try {
+                if (!users.containsKey(userId) || !users.containsKey(friendId)) {
+                    throw new NotFoundException("Пользователь не найден");
+                }
+                if (!putFriend(userId, friendId, true)) {
+                    throw new ValidationException("Пользователь уже добавлен в друзья");
+                }
+                appender.append(friendRecord(JournalOperation.ADD_FRIEND, userId, friendId));
+                appender.append(friendStatusRecord(userId, friendId, true));
+
+                if (!existsFriend(friendId, userId)) {
+                    return FriendshipState.REQUESTED;
+                }
+                if (setFriendStatus(friendId, userId, true)) {
+                    appender.append(friendStatusRecord(friendId, userId, true));
+                }
+                return FriendshipState.CONFIRMED;
+            } finally {
+                acquired.forEach(ReentrantLock::unlock);
+            }
+        });
+    }
+
+    @Override
+    public boolean existsFriend(long userId, long friendId) {
+        Map<Long, Boolean> outgoing = friends.get(userId);
+        return outgoing != null && outgoing.containsKey(friendId);
+    }
+
+    @Override
+    public void updateFriendStatus(long userId, long friendId, boolean status) {
+        journal.mutate(appender -> {
+            List<ReentrantLock> acquired = lockAll(userId, Set.of(friendId));
+            try {
+                if (setFriendStatus(userId, friendId, status)) {
+                    appender.append(friendStatusRecord(userId, friendId, status));
+                }
+            } finally {
+                acquired.forEach(ReentrantLock::unlock);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void removeFriend(long userId, long friendId) {
+        if (!users.containsKey(userId)) {
+            throw new NotFoundException("Пользователь с id " + userId + " не найден!");
+        }
+        if (!users.containsKey(friendId)) {
+            throw new NotFoundException("Пользователь с id " + friendId + " не найден!");
+        }
+
+        journal.mutate(appender -> {
+            List<ReentrantLock> acquired = lockAll(userId, Set.of(friendId));
+            try {
+                if (deleteFriend(userId, friendId)) {
+                    appender.append(friendRecord(JournalOperation.REMOVE_FRIEND, userId, friendId));
+                }
+            } finally {
+                acquired.forEach(ReentrantLock::unlock);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<User> getFriendIds(long userId) {
+        if (!users.containsKey(userId)) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+        return confirmedFriends(userId).stream()
+                .sorted()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(this::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void forEachFriendship(BiConsumer<Long, Long> consumer) {
+        friends.forEach((userId, outgoing) -> outgoing.forEach((friendId, status) -> {
+            if (status) {
+                consumer.accept(userId, friendId);
+            }
+        }));
+    }
+
+    @Override
+    public Set<Long> getFollowerIds(long userId) {
+        return followers.getOrDefault(userId, Set.of()).stream()
+                .filter(followerId -> Boolean.TRUE.equals(friends.getOrDefault(followerId, Map.of()).get(userId)))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Map<Long, Integer> countMutualFriends(long userId) {
+        if (!users.containsKey(userId)) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+        Set<Long> own = confirmedFriends(userId);
+        Map<Long, Integer> counts = new HashMap<>();
+        for (long friendId : own) {
+            int mutual = 0;
+            for (Map.Entry<Long, Boolean> entry : friends.getOrDefault(friendId, Map.of()).entrySet()) {
+                if (entry.getValue() && own.contains(entry.getKey())) {
+                    mutual++;
+                }
+            }
+            counts.put(friendId, mutual);
+        }
+        return counts;
+    }
+
+    @Override
+    public Collection<User> getCommonFriends(long userId, long otherId) {
+        if (!users.containsKey(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+        if (!users.containsKey(otherId)) {
+            throw new NotFoundException("Пользователь с ID " + otherId + " не найден");
+        }
+
+        Set<Long> common = confirmedFriends(userId);
+        common.retainAll(confirmedFriends(otherId));
+        return common.stream()
+                .sorted()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(this::copyOf)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String getJournalSection() {
+        return "users";
+    }
+
+    @Override
+    public boolean supports(JournalOperation operation) {
+        return JOURNAL_OPERATIONS.contains(operation);
+    }
+
+    @Override
+    public void replay(JournalOperation operation, DataInput in) throws IOException {
+        switch (operation) {
+            case ADD_USER, UPDATE_USER -> putUser(readUser(in));
+            case REMOVE_USER -> deleteUser(in.readLong());
+            case ADD_FRIEND -> putFriend(in.readLong(), in.readLong(), false);
+            case UPDATE_FRIEND_STATUS -> setFriendStatus(in.readLong(), in.readLong(), in.readBoolean());
+            case REMOVE_FRIEND -> deleteFriend(in.readLong(), in.readLong());
+            default -> throw new IllegalStateException("Операция " + operation + " не относится к пользователям");
+        }
+    }
+
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+        out.writeLong(idSequence.get());
+        out.writeInt(users.size());
+        for (User user : users.values()) {
+            writeUser(out, user);
+            Map<Long, Boolean> outgoing = new HashMap<>(friends.getOrDefault(user.getId(), Map.of()));
+            out.writeInt(outgoing.size());
+            for (Map.Entry<Long, Boolean> friend : outgoing.entrySet()) {
+                out.writeLong(friend.getKey());
+                out.writeBoolean(friend.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+        users.clear();
+        friends.clear();
+        followers.clear();
+        idSequence.set(in.readLong());
+        int userCount = in.readInt();
+        for (int i = 0; i < userCount; i++) {
+            User user = readUser(in);
+            putUser(user);
+            int friendCount = in.readInt();
+            for (int j = 0; j < friendCount; j++) {
+                putFriend(user.getId(), in.readLong(), in.readBoolean());
+            }
+        }
+    }
+
+    private void putUser(User user) {
+        users.put(user.getId(), user);
+        idSequence.accumulateAndGet(user.getId(), Math::max);
+    }
+
+    private boolean deleteUser(long userId) {
+        if (users.remove(userId) == null) {
+            return false;
+        }
+        Map<Long, Boolean> outgoing = friends.remove(userId);
+        if (outgoing != null) {
+            outgoing.keySet().forEach(friendId -> followersOf(friendId).remove(userId));
+        }
+        Set<Long> incoming = followers.remove(userId);
+        if (incoming != null) {
+            incoming.forEach(followerId -> friendsOf(followerId).remove(userId));
+        }
+        return true;
+    }
+
+    private boolean putFriend(long userId, long friendId, boolean status) {
+        if (friendsOf(userId).putIfAbsent(friendId, status) != null) {
+            return false;
+        }
+        followersOf(friendId).add(userId);
+        return true;
+    }
+
+    private boolean setFriendStatus(long userId, long friendId, boolean status) {
+        Map<Long, Boolean> outgoing = friends.get(userId);
+        return outgoing != null && outgoing.computeIfPresent(friendId, (id, old) -> status) != null;
+    }
+
+    private boolean deleteFriend(long userId, long friendId) {
+        Map<Long, Boolean> outgoing = friends.get(userId);
+        if (outgoing == null || outgoing.remove(friendId) == null) {
+            return false;
+        }
+        followersOf(friendId).remove(userId);
+        return true;
+    }
+
+    private static JournalRecord friendRecord(JournalOperation operation, long userId, long friendId) {
+        return JournalRecord.of(operation, out -> {
+            out.writeLong(userId);
+            out.writeLong(friendId);
+        });
+    }
+
+    private static JournalRecord friendStatusRecord(long userId, long friendId, boolean status) {
+        return JournalRecord.of(JournalOperation.UPDATE_FRIEND_STATUS, out -> {
+            out.writeLong(userId);
+            out.writeLong(friendId);
+            out.writeBoolean(status);
+        });
+    }
+
+    private static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeLong(user.getId());
+        out.writeUTF(user.getEmail());
+        out.writeUTF(user.getLogin());
+        out.writeUTF(user.getName());
+        out.writeLong(user.getBirthday().toEpochDay());
+    }
+
+    private static User readUser(DataInput in) throws IOException {
+        return User.builder()
+                .id(in.readLong())
+                .email(in.readUTF())
+                .login(in.readUTF())
+                .name(in.readUTF())
+                .birthday(LocalDate.ofEpochDay(in.readLong()))
+                .build();
+    }
+
+    private Set<Long> confirmedFriends(long userId) {
+        Map<Long, Boolean> outgoing = friends.getOrDefault(userId, Map.of());
+        Set<Long> result = new HashSet<>();
+        outgoing.forEach((friendId, status) -> {
+            if (status) {
+                result.add(friendId);
+            }
+        });
+        return result;
+    }
+
+    private Set<Long> relatedUsers(long userId) {
+        Set<Long> related = new HashSet<>(friends.getOrDefault(userId, Map.of()).keySet());
+        related.addAll(followers.getOrDefault(userId, Set.of()));
+        return related;
+    }
+
+    private Map<Long, Boolean> friendsOf(long userId) {
+        return friends.computeIfAbsent(userId, id -> new ConcurrentHashMap<>());
+    }
+
+    private Set<Long> followersOf(long userId) {
+        return followers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet());
+    }
+
+    private User copyOf(User user) {
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .name(user.getName())
+                .birthday(user.getBirthday())
+                .build();
+    }
+
+    private ReentrantLock lockFor(long userId) {
+        return locks[stripeOf(userId)];
+    }
+
+    // Полосы берутся по возрастанию номера, чтобы встречные операции не взаимоблокировались
+    private List<ReentrantLock> lockAll(long userId, Collection<Long> others) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        stripes.add(stripeOf(userId));
+        others.forEach(id -> stripes.add(stripeOf(id)));
+
+        List<ReentrantLock> acquired = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            acquired.add(locks[stripe]);
+        }
+        return acquired;
+    }
+
+    private static int stripeOf(long userId) {
+        return (int) (userId & (LOCK_STRIPES - 1));
+    }
+
+    private static ReentrantLock[] createLocks() {
+        ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+}
@@ -2,26 +2,48 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FriendshipState;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeLog;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeType;
+import ru.yandex.practicum.filmorate.storage.film.FilmReadModel;
+import ru.yandex.practicum.filmorate.validation.ModelValidator;
 
 import java.sql.*;
 import java.sql.Date;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
 @Qualifier("userDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 public class UserDbStorage implements UserStorage {
 
+    private static final int IN_CHUNK_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
 
+    private final FilmReadModel filmReadModel;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Удаления пользователей и изменения дружбы нужны графу дружбы других экземпляров
+    private final ChangeLog changeLog;
+
     private User userRowMapper(ResultSet rs, int rowNum) throws SQLException {
         return User.builder()
                 .id((long) rs.getInt("id"))
@@ -34,7 +56,7 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User addUser(User user) {
-        validateUser(user);
+        ModelValidator.validateUser(user);
 
         String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -62,7 +84,34 @@ public class UserDbStorage implements UserStorage {
         }
 
         String sql = "INSERT INTO friends (user_id, friend_id, status) VALUES (?, ?, false)";
-        jdbcTemplate.update(sql, userId, friendId);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(sql, userId, friendId);
+            changeLog.record(ChangeType.FRIENDSHIP_CHANGED, userId, friendId);
+        });
+    }
+
+    // Обе строки пользователей блокируются в порядке id: встречные заявки выполняются по очереди,
+    // и вторая видит строку первой (иначе обе не находят встречную заявку и обе получают REQUESTED).
+    // Заблокированные строки заодно подтверждают, что оба пользователя существуют; повтор - по ключу таблицы.
+    @Override
+    public FriendshipState createFriendship(long userId, long friendId) {
+        try {
+            return transactionTemplate.execute(status -> {
+                List<Long> locked = jdbcTemplate.queryForList(
+                        "SELECT id FROM users WHERE id IN (?, ?) ORDER BY id FOR UPDATE", Long.class, userId, friendId);
+                if (locked.size() < (userId == friendId ? 1 : 2)) {
+                    throw new NotFoundException("Пользователь не найден");
+                }
+                int confirmed = jdbcTemplate.update(
+                        "UPDATE friends SET status = true WHERE user_id = ? AND friend_id = ?", friendId, userId);
+                jdbcTemplate.update("INSERT INTO friends (user_id, friend_id, status) VALUES (?, ?, true)",
+                        userId, friendId);
+                changeLog.record(ChangeType.FRIENDSHIP_CHANGED, userId, friendId);
+                return confirmed > 0 ? FriendshipState.CONFIRMED : FriendshipState.REQUESTED;
+            });
+        } catch (DuplicateKeyException e) {
+            throw new ValidationException("Пользователь уже добавлен в друзья");
+        }
     }
 
     @Override
@@ -83,7 +132,10 @@ public class UserDbStorage implements UserStorage {
             SET status = ?
             WHERE user_id = ? AND friend_id = ?
         """;
-        jdbcTemplate.update(sql, status, userId, friendId);
+        transactionTemplate.executeWithoutResult(transaction -> {
+            jdbcTemplate.update(sql, status, userId, friendId);
+            changeLog.record(ChangeType.FRIENDSHIP_CHANGED, userId, friendId);
+        });
     }
 
     @Override
@@ -102,7 +154,24 @@ public class UserDbStorage implements UserStorage {
         String checkFriendshipSql = "SELECT COUNT(*) FROM friends WHERE user_id = ? AND friend_id = ?";
 
         String deleteSql = "DELETE FROM friends WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(deleteSql, userId, friendId);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(deleteSql, userId, friendId);
+            changeLog.record(ChangeType.FRIENDSHIP_CHANGED, userId, friendId);
+        });
+    }
+
+    @Override
+    public void forEachFriendship(BiConsumer<Long, Long> consumer) {
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friends WHERE status = true",
+                rs -> {
+                    consumer.accept(rs.getLong("user_id"), rs.getLong("friend_id"));
+                });
+    }
+
+    @Override
+    public Set<Long> getFollowerIds(long userId) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT user_id FROM friends WHERE friend_id = ? AND status = true", Long.class, userId));
     }
 
     public List<User> getFriendIds(long userId) {
@@ -134,9 +203,54 @@ public class UserDbStorage implements UserStorage {
         );
     }
 
+    // Друзья друзей читаются одним запросом, отсортированными по (друг, его друг), и сливаются
+    // с отсортированным списком своих друзей: без отдельного запроса на каждого друга
+    @Override
+    public Map<Long, Integer> countMutualFriends(long userId) {
+        long[] own = jdbcTemplate.queryForList(
+                        "SELECT friend_id FROM friends WHERE user_id = ? AND status = true ORDER BY friend_id",
+                        Long.class, userId)
+                .stream().mapToLong(Long::longValue).toArray();
+        if (own.length == 0) {
+            if (getUser(userId).isEmpty()) {
+                throw new NotFoundException("Пользователь не найден");
+            }
+            return Map.of();
+        }
+
+        Map<Long, Integer> counts = new HashMap<>();
+        for (long friendId : own) {
+            counts.put(friendId, 0);
+        }
+        String sql = """
+            SELECT f2.user_id, f2.friend_id
+            FROM friends f1
+            JOIN friends f2 ON f2.user_id = f1.friend_id AND f2.status = true
+            WHERE f1.user_id = ? AND f1.status = true
+            ORDER BY f2.user_id, f2.friend_id
+        """;
+        long[] current = {-1};
+        int[] cursor = {0};
+        jdbcTemplate.query(sql, rs -> {
+            long friendId = rs.getLong(1);
+            long friendOfFriend = rs.getLong(2);
+            if (friendId != current[0]) {
+                current[0] = friendId;
+                cursor[0] = 0;
+            }
+            while (cursor[0] < own.length && own[cursor[0]] < friendOfFriend) {
+                cursor[0]++;
+            }
+            if (cursor[0] < own.length && own[cursor[0]] == friendOfFriend) {
+                counts.merge(friendId, 1, Integer::sum);
+            }
+        }, userId);
+        return counts;
+    }
+
     @Override
     public User updateUser(User user) {
-        validateUser(user);
+        ModelValidator.validateUser(user);
 
         String checkSql = "SELECT COUNT(*) FROM users WHERE id = ?";
         Integer count = jdbcTemplate.queryForObject(checkSql, Integer.class, user.getId());
@@ -163,23 +277,45 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public void removeUser(User user) {
-        // Сначала удаляем связи
-        String deleteFriendsSql = "DELETE FROM friends WHERE user_id = ? OR friend_id = ?";
-        jdbcTemplate.update(deleteFriendsSql, user.getId(), user.getId());
-
-        // Затем пользователя
-        String deleteUserSql = "DELETE FROM users WHERE id = ?";
-        int deleted = jdbcTemplate.update(deleteUserSql, user.getId());
+        transactionTemplate.executeWithoutResult(status -> {
+            // Сначала удаляем связи: два запроса, каждый по своему индексу
+            jdbcTemplate.update("DELETE FROM friends WHERE user_id = ?", user.getId());
+            jdbcTemplate.update("DELETE FROM friends WHERE friend_id = ?", user.getId());
+            filmReadModel.onUserRemoved(user.getId());
+
+            // Затем пользователя
+            String deleteUserSql = "DELETE FROM users WHERE id = ?";
+            int deleted = jdbcTemplate.update(deleteUserSql, user.getId());
+
+            if (deleted == 0) {
+                throw new NotFoundException("Пользователь с id=" + user.getId() + " не найден");
+            }
+            changeLog.record(ChangeType.USER_REMOVED, user.getId(), 0);
+        });
+    }
 
-        if (deleted == 0) {
-            throw new NotFoundException("Пользователь с id=" + user.getId() + " не найден");
-        }
+    // Одна пачка - одна короткая транзакция; каждый DELETE идёт по индексу своей колонки
+    @Override
+    public int removeUsers(Collection<Long> ids) {
+        if (ids.isEmpty()) return 0;
+
+        Object[] params = ids.toArray();
+        String placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(","));
+        Integer removed = transactionTemplate.execute(status -> {
+            filmReadModel.onUsersRemoved(ids);
+            jdbcTemplate.update("DELETE FROM likes WHERE user_id IN (" + placeholders + ")", params);
+            jdbcTemplate.update("DELETE FROM friends WHERE user_id IN (" + placeholders + ")", params);
+            jdbcTemplate.update("DELETE FROM friends WHERE friend_id IN (" + placeholders + ")", params);
+            changeLog.recordAll(ChangeType.USER_REMOVED, ids);
+            return jdbcTemplate.update("DELETE FROM users WHERE id IN (" + placeholders + ")", params);
+        });
+        return removed == null ? 0 : removed;
     }
 
     @Override
     public Optional<User> getUser(long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
-        return Optional.ofNullable(jdbcTemplate.queryForObject(sql, this::userRowMapper, id));
+        return jdbcTemplate.query(sql, this::userRowMapper, id).stream().findFirst();
     }
 
     @Override
@@ -188,6 +324,75 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sql, this::userRowMapper);
     }
 
+    @Override
+    public Optional<User> getUser(long id, Set<UserField> fields) {
+        String sql = "SELECT " + columns(fields) + " FROM users WHERE id = ?";
+        return jdbcTemplate.query(sql, userRowMapper(fields), id).stream().findFirst();
+    }
+
+    @Override
+    public Collection<User> getAllUsers(Set<UserField> fields) {
+        String sql = "SELECT " + columns(fields) + " FROM users";
+        return jdbcTemplate.query(sql, userRowMapper(fields));
+    }
+
+    @Override
+    public Map<Long, User> getUsers(Collection<Long> ids) {
+        return getUsers(ids, UserField.ALL);
+    }
+
+    @Override
+    public Map<Long, User> getUsers(Collection<Long> ids, Set<UserField> fields) {
+        Map<Long, User> result = new HashMap<>();
+        List<Long> idList = new ArrayList<>(ids);
+        // Длинные списки режем на части, чтобы не упираться в размер IN (...)
+        for (int from = 0; from < idList.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = idList.subList(from, Math.min(from + IN_CHUNK_SIZE, idList.size()));
+            String placeholders = chunk.stream().map(id -> "?").collect(Collectors.joining(","));
+            String sql = "SELECT " + columns(fields) + " FROM users WHERE id IN (" + placeholders + ")";
+            jdbcTemplate.query(sql, userRowMapper(fields), chunk.toArray())
+                    .forEach(user -> result.put(user.getId(), user));
+        }
+        return result;
+    }
+
+    @Override
+    public List<User> getFriendIds(long userId, Set<UserField> fields) {
+        if (!userExists(userId)) {
+            throw new NotFoundException("Пользователь не найден");
+        }
+
+        String sql = "SELECT " + columns(fields) + " FROM users " +
+                "WHERE id IN (SELECT friend_id FROM friends WHERE user_id = ? AND status = true)";
+        return jdbcTemplate.query(sql, userRowMapper(fields), userId);
+    }
+
+    // Имена колонок users совпадают с именами полей
+    private static String columns(Set<UserField> fields) {
+        return fields.stream()
+                .map(UserField::getJsonName)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static RowMapper<User> userRowMapper(Set<UserField> fields) {
+        return (rs, rowNum) -> {
+            User user = User.builder().id(rs.getLong("id")).build();
+            if (fields.contains(UserField.EMAIL)) {
+                user.setEmail(rs.getString("email"));
+            }
+            if (fields.contains(UserField.LOGIN)) {
+                user.setLogin(rs.getString("login"));
+            }
+            if (fields.contains(UserField.NAME)) {
+                user.setName(rs.getString("name"));
+            }
+            if (fields.contains(UserField.BIRTHDAY)) {
+                user.setBirthday(rs.getDate("birthday").toLocalDate());
+            }
+            return user;
+        };
+    }
+
     @Override
     public Collection<User> getCommonFriends(long userId, long otherId) {
         if (!userExists(userId)) {
@@ -207,22 +412,4 @@ public class UserDbStorage implements UserStorage {
                 ")";
         return jdbcTemplate.query(sql, this::userRowMapper, userId, otherId);
     }
-
-    private void validateUser(User user) {
-        if (user.getLogin() == null || user.getLogin().isBlank() || user.getLogin().contains(" ")) {
-            throw new ValidationException("Некорректный логин!");
-        }
-
-        if (user.getEmail() == null || !user.getEmail().contains("@")) {
-            throw new ValidationException("Некорректный email");
-        }
-
-        if (user.getBirthday() == null || user.getBirthday().isAfter(LocalDate.now())) {
-            throw new ValidationException("Некорректная дата рождения");
-        }
-
-        if (user.getName() == null || user.getName().isBlank()) {
-            user.setName(user.getLogin());
-        }
-    }
 }
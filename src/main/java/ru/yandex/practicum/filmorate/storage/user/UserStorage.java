@@ -1,9 +1,15 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.FriendshipState;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 public interface UserStorage {
     User addUser(User user);
@@ -12,12 +18,21 @@ public interface UserStorage {
 
     void removeUser(User user);
 
+    // Удаляет пользователей вместе с их дружбой и лайками, возвращает число удалённых
+    int removeUsers(Collection<Long> ids);
+
     Optional<User> getUser(long id);
 
     Collection<User> getAllUsers();
 
+    // Пользователи по списку id одним запросом; отсутствующих id в результате нет
+    Map<Long, User> getUsers(Collection<Long> ids);
+
     void addFriend(long userId, long friendId);
 
+    // Атомарно добавляет друга и подтверждает встречную заявку, если она есть
+    FriendshipState createFriendship(long userId, long friendId);
+
     boolean existsFriend(long userId, long friendId);
 
     void updateFriendStatus(long userId, long friendId, boolean status);
@@ -26,5 +41,31 @@ public interface UserStorage {
 
     List<User> getFriendIds(long userId);
 
+    // id пользователей, у которых userId в подтверждённых друзьях
+    Set<Long> getFollowerIds(long userId);
+
+    // Обходит все подтверждённые дружбы: (id пользователя, id его друга)
+    void forEachFriendship(BiConsumer<Long, Long> consumer);
+
     Collection<User> getCommonFriends(long userId, long otherId);
-}
\ No newline at end of file
+
+    // Для каждого подтверждённого друга userId - число их общих друзей, за один проход
+    Map<Long, Integer> countMutualFriends(long userId);
+
+    // Проекции по набору полей; хранилище может не читать остальные поля
+    default Optional<User> getUser(long id, Set<UserField> fields) {
+        return getUser(id);
+    }
+
+    default Collection<User> getAllUsers(Set<UserField> fields) {
+        return getAllUsers();
+    }
+
+    default List<User> getFriendIds(long userId, Set<UserField> fields) {
+        return getFriendIds(userId);
+    }
+
+    default Map<Long, User> getUsers(Collection<Long> ids, Set<UserField> fields) {
+        return getUsers(ids);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.validation;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+// Общие правила для фильмов и пользователей: их применяют и хранилища (запись через API), и массовый импорт,
+// так что оба пути принимают одни и те же данные. Проверка ссылок на справочники остаётся у вызывающего:
+// хранилище идёт в базу, импорт сверяет с заранее прочитанными id.
+public final class ModelValidator {
+    public static final int DESCRIPTION_MAX_LENGTH = 200;
+    public static final LocalDate BIRTHDAY_CINEMA = LocalDate.of(1895, 12, 28);
+
+    private ModelValidator() {
+    }
+
+    public static void validateFilm(Film film) {
+        if (film.getName() == null || film.getName().isBlank()) {
+            throw new ValidationException("Название фильма отсутствует!");
+        }
+        if (film.getDescription() == null || film.getDescription().isBlank()
+                || film.getDescription().length() > DESCRIPTION_MAX_LENGTH) {
+            throw new ValidationException("Описание фильма отсутствует или слишком велико!");
+        }
+        if (film.getReleaseDate() == null || film.getReleaseDate().isBefore(BIRTHDAY_CINEMA)) {
+            throw new ValidationException("Некорректная дата релиза!");
+        }
+        if (film.getDuration() <= 0) {
+            throw new ValidationException("Продолжительность фильма должна быть положительной!");
+        }
+        if (film.getMpa() == null) {
+            throw new ValidationException("Фильм должен иметь возрастной рейтинг!");
+        }
+    }
+
+    // Пустое имя заменяется логином
+    public static void validateUser(User user) {
+        if (user.getLogin() == null || user.getLogin().isBlank() || user.getLogin().contains(" ")) {
+            throw new ValidationException("Некорректный логин!");
+        }
+        if (user.getEmail() == null || !user.getEmail().contains("@")) {
+            throw new ValidationException("Некорректный email");
+        }
+        if (user.getBirthday() == null || user.getBirthday().isAfter(LocalDate.now())) {
+            throw new ValidationException("Некорректная дата рождения");
+        }
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+    }
+}
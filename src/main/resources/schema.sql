@@ -1,8 +1,13 @@
+DROP TABLE IF EXISTS change_log;
+DROP TABLE IF EXISTS analytics_sketches;
+DROP TABLE IF EXISTS feed_events;
+DROP TABLE IF EXISTS film_read_model;
 DROP TABLE IF EXISTS film_genres;
 DROP TABLE IF EXISTS likes;
 DROP TABLE IF EXISTS films;
 DROP TABLE IF EXISTS friends;
 DROP TABLE IF EXISTS users;
+DROP SEQUENCE IF EXISTS feed_event_seq;
 
 CREATE TABLE IF NOT EXISTS users (
     id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -60,7 +65,66 @@ CREATE TABLE IF NOT EXISTS friends (
 CREATE TABLE IF NOT EXISTS likes (
     film_id INTEGER NOT NULL,
     user_id INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     PRIMARY KEY (film_id, user_id),
     FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- Обратные индексы для удаления пользователя: первичные ключи начинаются с user_id и film_id
+CREATE INDEX IF NOT EXISTS friends_friend_id ON friends (friend_id);
+CREATE INDEX IF NOT EXISTS likes_user_id ON likes (user_id);
+
+CREATE TABLE IF NOT EXISTS film_read_model (
+    film_id INTEGER PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    description VARCHAR(200),
+    release_date DATE NOT NULL,
+    duration INTEGER NOT NULL,
+    mpa_id INTEGER,
+    mpa_name VARCHAR(10),
+    mpa_description VARCHAR(255),
+    genre_ids VARCHAR(255) NOT NULL DEFAULT '',
+    genre_names VARCHAR(2000) NOT NULL DEFAULT '',
+    like_count INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS film_read_model_popularity ON film_read_model (like_count DESC, film_id);
+
+-- Ленты событий: входящие ленты пользователей (outbox = false) и исходящие ленты знаменитостей (outbox = true).
+-- Хранятся только последние события каждой ленты, пишутся с запаздыванием из колец в памяти
+CREATE TABLE IF NOT EXISTS feed_events (
+    owner_id INTEGER NOT NULL,
+    outbox BOOLEAN NOT NULL,
+    event_id BIGINT NOT NULL,
+    actor_id INTEGER NOT NULL,
+    event_type VARCHAR(10) NOT NULL,
+    entity_id INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (owner_id, outbox, event_id)
+);
+
+-- Id событий лент: одна последовательность на все экземпляры, чтобы события разных экземпляров не совпали по ключу
+CREATE SEQUENCE IF NOT EXISTS feed_event_seq;
+
+-- Сериализованные скетчи аналитики лайков по дням: HLL уникальных лайкнувших по жанрам и Count-Min частот фильмов
+CREATE TABLE IF NOT EXISTS analytics_sketches (
+    kind VARCHAR(20) NOT NULL,
+    sketch_day DATE NOT NULL,
+    sketch_key INTEGER NOT NULL,
+    data VARBINARY NOT NULL,
+    PRIMARY KEY (kind, sketch_day, sketch_key)
+);
+
+-- Журнал изменений для сброса кэшей других экземпляров; строки старше filmorate.change-log.retention-ms удаляются
+CREATE TABLE IF NOT EXISTS change_log (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    node_id VARCHAR(36) NOT NULL,
+    change_type VARCHAR(32) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    related_id BIGINT NOT NULL DEFAULT 0,
+    detail VARCHAR(32),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS change_log_created_at ON change_log (created_at);
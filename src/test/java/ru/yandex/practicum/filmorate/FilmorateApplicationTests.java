@@ -1,24 +1,59 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.event.ImportFinishedEvent;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.graph.FriendGraph;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.service.BulkImportService;
+import ru.yandex.practicum.filmorate.service.CatalogStats;
+import ru.yandex.practicum.filmorate.service.ChangeLogPoller;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FilmJsonCache;
+import ru.yandex.practicum.filmorate.service.PopularFilmsSnapshot;
+import ru.yandex.practicum.filmorate.storage.DbGroupCommit;
+import ru.yandex.practicum.filmorate.storage.bulk.BulkImportDbStorage;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeLog;
+import ru.yandex.practicum.filmorate.storage.changelog.ChangeType;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmReadModel;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @JdbcTest
 @AutoConfigureTestDatabase
@@ -27,16 +62,22 @@ import static org.assertj.core.api.Assertions.assertThat;
 class FilmorateApplicationTests {
 
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
     private UserDbStorage userStorage;
     private FilmDbStorage filmStorage;
     private MpaDbStorage mpaStorage;
     private GenreDbStorage genreStorage;
+    private FilmReadModel filmReadModel;
+    private ChangeLog changeLog;
 
     @BeforeEach
     void setUp() {
         // Инициализируем все хранилища
-        userStorage = new UserDbStorage(jdbcTemplate);
-        filmStorage = new FilmDbStorage(jdbcTemplate);
+        filmReadModel = new FilmReadModel(jdbcTemplate);
+        changeLog = new ChangeLog(jdbcTemplate);
+        userStorage = new UserDbStorage(jdbcTemplate, filmReadModel, transactionTemplate, changeLog);
+        filmStorage = new FilmDbStorage(jdbcTemplate, filmReadModel, transactionTemplate,
+                new DbGroupCommit(jdbcTemplate.getDataSource(), transactionTemplate, 0, 1), changeLog);
         mpaStorage = new MpaDbStorage(jdbcTemplate);
         genreStorage = new GenreDbStorage(jdbcTemplate);
 
@@ -48,6 +89,7 @@ class FilmorateApplicationTests {
     }
 
     private void clearAllTables() {
+        jdbcTemplate.execute("DELETE FROM change_log");
         jdbcTemplate.execute("DELETE FROM likes");
         jdbcTemplate.execute("DELETE FROM film_genres");
         jdbcTemplate.execute("DELETE FROM friends");
@@ -57,6 +99,19 @@ class FilmorateApplicationTests {
         jdbcTemplate.execute("DELETE FROM mpa");
     }
 
+    private List<User> addUsers(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            users.add(userStorage.addUser(User.builder()
+                    .email("user" + i + "@example.com")
+                    .login("user" + i)
+                    .name("User " + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()));
+        }
+        return users;
+    }
+
     private void initializeReferenceData() {
         // MPA рейтинги
         jdbcTemplate.update("INSERT INTO mpa (id, name, description) VALUES (1, 'G', 'Нет возрастных ограничений')");
@@ -98,6 +153,12 @@ class FilmorateApplicationTests {
         assertThat(retrievedUser.get().getName()).isEqualTo("Test User");
     }
 
+    @Test
+    void testGetUnknownUserReturnsEmpty() {
+        // Неизвестный id - пустой Optional, как у хранилища в памяти, а не EmptyResultDataAccessException
+        assertThat(userStorage.getUser(9999)).isEmpty();
+    }
+
     @Test
     void testUpdateUser() {
         // Given
@@ -208,6 +269,118 @@ class FilmorateApplicationTests {
         assertThat(userStorage.existsFriend(savedUser1.getId(), savedUser2.getId())).isFalse();
     }
 
+    @Test
+    void testCreateFriendshipConfirmsCounterRequest() {
+        User savedUser1 = userStorage.addUser(User.builder()
+                .email("user1@example.com")
+                .login("user1")
+                .name("User One")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        User savedUser2 = userStorage.addUser(User.builder()
+                .email("user2@example.com")
+                .login("user2")
+                .name("User Two")
+                .birthday(LocalDate.of(1995, 1, 1))
+                .build());
+
+        assertThat(userStorage.createFriendship(savedUser1.getId(), savedUser2.getId()))
+                .isEqualTo(FriendshipState.REQUESTED);
+        assertThat(userStorage.createFriendship(savedUser2.getId(), savedUser1.getId()))
+                .isEqualTo(FriendshipState.CONFIRMED);
+        assertThat(userStorage.existsFriend(savedUser1.getId(), savedUser2.getId())).isTrue();
+        assertThat(userStorage.existsFriend(savedUser2.getId(), savedUser1.getId())).isTrue();
+
+        Assertions.assertThrows(ValidationException.class,
+                () -> userStorage.createFriendship(savedUser1.getId(), savedUser2.getId()));
+        Assertions.assertThrows(NotFoundException.class,
+                () -> userStorage.createFriendship(savedUser1.getId(), savedUser2.getId() + 100));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testConcurrentMutualRequestsConfirmOnce() throws Exception {
+        List<User> users = addUsers(40);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 20; round++) {
+                long first = users.get(2 * round).getId();
+                long second = users.get(2 * round + 1).getId();
+
+                // Встречные заявки одновременно: ровно одна из них должна подтвердить дружбу
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<FriendshipState> forward = executor.submit(() -> {
+                    start.await();
+                    return userStorage.createFriendship(first, second);
+                });
+                Future<FriendshipState> backward = executor.submit(() -> {
+                    start.await();
+                    return userStorage.createFriendship(second, first);
+                });
+
+                assertThat(List.of(forward.get(10, TimeUnit.SECONDS), backward.get(10, TimeUnit.SECONDS)))
+                        .containsExactlyInAnyOrder(FriendshipState.REQUESTED, FriendshipState.CONFIRMED);
+                assertThat(jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM friends WHERE user_id IN (?, ?) AND status = true",
+                        Integer.class, first, second)).isEqualTo(2);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFeedMergesPushedAndCelebrityEvents() {
+        List<Long> ids = addUsers(4).stream().map(User::getId).toList();
+        long reader = ids.get(0);
+        long friend = ids.get(1);
+        long celebrity = ids.get(2);
+        userStorage.createFriendship(reader, friend);
+        userStorage.createFriendship(reader, celebrity);
+        userStorage.createFriendship(ids.get(3), celebrity);
+
+        // Кольцо на 3 события, знаменитость - больше одного подписчика
+        FeedService feedService = new FeedService(userStorage, feedStorage(changeLog), 3, 1, 100);
+        like(feedService, friend, 10, true);
+        like(feedService, celebrity, 11, true);
+        like(feedService, friend, 12, true);
+        like(feedService, friend, 13, true);
+        like(feedService, friend, 14, true);
+        like(feedService, friend, 15, false);
+
+        FeedPage first = feedService.getFeed(reader, null, 2);
+        assertThat(first.getEvents()).extracting(FeedEvent::getEntityId).containsExactly(14L, 13L);
+        FeedPage second = feedService.getFeed(reader, first.getNextCursor(), 2);
+        assertThat(second.getEvents()).extracting(FeedEvent::getEntityId).containsExactly(12L, 11L);
+        // Событие 10 вытеснено из кольца, дальше листать нечего
+        assertThat(second.getNextCursor()).isNull();
+
+        // После записи в базу новый экземпляр поднимает ленты из таблицы
+        feedService.flush();
+        FeedService restarted = new FeedService(userStorage, feedStorage(changeLog), 3, 1, 100);
+        restarted.onApplicationReady();
+        assertThat(restarted.getFeed(reader, null, 10).getEvents())
+                .extracting(FeedEvent::getEntityId)
+                .containsExactly(14L, 13L, 12L, 11L);
+        Assertions.assertThrows(NotFoundException.class, () -> restarted.getFeed(ids.get(3) + 100, null, 10));
+    }
+
+    @SuppressWarnings("unchecked")
+    private FeedDbStorage feedStorage(ChangeLog nodeChangeLog) {
+        ObjectProvider<ChangeLog> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(nodeChangeLog);
+        return new FeedDbStorage(jdbcTemplate, provider);
+    }
+
+    private void like(FeedService feedService, long userId, long filmId, boolean liked) {
+        feedService.onLike(LikeEvent.builder()
+                .filmId(filmId)
+                .userId(userId)
+                .liked(liked)
+                .occurredAt(Instant.now())
+                .build());
+    }
+
     @Test
     void testGetFriendIds() {
         // Given
@@ -295,6 +468,28 @@ class FilmorateApplicationTests {
         assertThat(commonFriends.iterator().next().getId()).isEqualTo(savedUser3.getId());
     }
 
+    @Test
+    void testCountMutualFriends() {
+        List<Long> ids = addUsers(4).stream().map(User::getId).toList();
+        // 0 дружит с 1, 2, 3; 1 дружит с 2 и 3; 2 дружит с 0 и 3; у 3 друзей нет
+        userStorage.createFriendship(ids.get(0), ids.get(1));
+        userStorage.createFriendship(ids.get(0), ids.get(2));
+        userStorage.createFriendship(ids.get(0), ids.get(3));
+        userStorage.createFriendship(ids.get(1), ids.get(2));
+        userStorage.createFriendship(ids.get(1), ids.get(3));
+        userStorage.createFriendship(ids.get(2), ids.get(0));
+        userStorage.createFriendship(ids.get(2), ids.get(3));
+
+        Map<Long, Integer> counts = userStorage.countMutualFriends(ids.get(0));
+
+        assertThat(counts).containsOnly(
+                Map.entry(ids.get(1), 2),
+                Map.entry(ids.get(2), 1),
+                Map.entry(ids.get(3), 0));
+        assertThat(userStorage.countMutualFriends(ids.get(3))).isEmpty();
+        Assertions.assertThrows(NotFoundException.class, () -> userStorage.countMutualFriends(9999));
+    }
+
     // ==================== ТЕСТЫ ДЛЯ ФИЛЬМОВ ====================
 
     @Test
@@ -443,6 +638,113 @@ class FilmorateApplicationTests {
         // Then - проверяем, что фильм больше не в топе (должен быть пустой список или другие фильмы)
     }
 
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testConcurrentLikesShareCommits() throws Exception {
+        // Без транзакции теста лайки идут через поток групповой фиксации
+        DbGroupCommit groupCommit = new DbGroupCommit(jdbcTemplate.getDataSource(), transactionTemplate, 2000, 64);
+        FilmDbStorage batchedStorage = new FilmDbStorage(jdbcTemplate, filmReadModel, transactionTemplate,
+                groupCommit, changeLog);
+        Film savedFilm = batchedStorage.addFilm(Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(120)
+                .mpa(Mpa.builder().id(1).build())
+                .build());
+        List<Long> userIds = addUsers(50).stream().map(User::getId).toList();
+
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            for (long userId : userIds) {
+                executor.submit(() -> {
+                    try {
+                        batchedStorage.addLike(savedFilm.getId(), userId);
+                        accepted.incrementAndGet();
+                    } catch (NotFoundException e) {
+                        rejected.incrementAndGet();
+                    }
+                });
+            }
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        groupCommit.destroy();
+
+        assertThat(accepted.get()).isEqualTo(50);
+        assertThat(rejected.get()).isEqualTo(50);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?",
+                Integer.class, savedFilm.getId())).isEqualTo(50);
+        assertThat(filmReadModel.findDrift()).isEmpty();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testGroupCommitSurvivesErrorInWrite() throws Exception {
+        DbGroupCommit groupCommit = new DbGroupCommit(jdbcTemplate.getDataSource(), transactionTemplate, 2000, 64);
+        Supplier<Integer> failing = () -> {
+            throw new StackOverflowError();
+        };
+        try {
+            // Error из записи доходит до вызывающего, а поток пачек продолжает работать
+            Assertions.assertThrows(StackOverflowError.class, () -> groupCommit.execute(failing));
+            assertThat(groupCommit.execute(() -> jdbcTemplate.queryForObject("SELECT 1", Integer.class)))
+                    .isEqualTo(1);
+        } finally {
+            groupCommit.destroy();
+        }
+    }
+
+    @Test
+    void testCatalogStatsFollowWritesAndReconcile() {
+        CatalogStats catalogStats = new CatalogStats(filmStorage);
+        Film comedy = filmStorage.addFilm(Film.builder()
+                .name("Комедия")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1).build())
+                .genres(new LinkedHashSet<>(List.of(Genre.builder().id(1).build())))
+                .build());
+        Film drama = filmStorage.addFilm(Film.builder()
+                .name("Драма")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(200)
+                .mpa(Mpa.builder().id(2).build())
+                .genres(new LinkedHashSet<>(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build())))
+                .build());
+        User user = userStorage.addUser(User.builder()
+                .email("liker@example.com")
+                .login("liker")
+                .name("Liker")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        catalogStats.filmSaved(comedy);
+        catalogStats.filmSaved(drama);
+        filmStorage.addLike(drama.getId(), user.getId());
+        catalogStats.onLike(LikeEvent.builder().filmId(drama.getId()).userId(user.getId()).liked(true).build());
+
+        CatalogStatistics statistics = catalogStats.getStatistics();
+        assertThat(statistics.getFilms()).isEqualTo(2);
+        assertThat(statistics.getAverageDuration()).isEqualTo(150.0);
+        assertThat(statistics.getFilmsByGenre()).containsExactly(Map.entry(1, 2L), Map.entry(2, 1L));
+        assertThat(statistics.getFilmsByMpa()).containsExactly(Map.entry(1, 1L), Map.entry(2, 1L));
+        assertThat(statistics.getLikesByGenre()).containsExactly(Map.entry(1, 1L), Map.entry(2, 1L));
+
+        // Удаление пользователя снимает его лайки мимо событий, их возвращает к истине сверка
+        userStorage.removeUser(user);
+        catalogStats.filmRemoved(comedy.getId());
+        catalogStats.reconcile();
+        statistics = catalogStats.getStatistics();
+        assertThat(statistics.getFilms()).isEqualTo(2);
+        assertThat(statistics.getLikes()).isZero();
+        assertThat(statistics.getLikesByGenre()).isEmpty();
+        assertThat(statistics.getReconciledAt()).isNotNull();
+    }
+
     @Test
     void testGetTopFilms() {
         // Given
@@ -779,4 +1081,310 @@ class FilmorateApplicationTests {
         assertThat(topFilms).hasSize(1);
         assertThat(topFilms.iterator().next().getId()).isEqualTo(savedFilm.getId());
     }
+
+    @Test
+    void testReadModelDriftAndRebuild() {
+        // Given - фильм с жанром и лайком
+        Film film = Film.builder()
+                .name("Фильм для read model")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(120)
+                .mpa(Mpa.builder().id(1).build())
+                .genres(new LinkedHashSet<>(List.of(Genre.builder().id(1).build())))
+                .build();
+        Film savedFilm = filmStorage.addFilm(film);
+        User savedUser = userStorage.addUser(User.builder()
+                .email("user1@example.com")
+                .login("user1")
+                .name("User One")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        filmStorage.addLike(savedFilm.getId(), savedUser.getId());
+        assertThat(filmReadModel.findDrift()).isEmpty();
+
+        // When - исходные таблицы меняются в обход хранилища
+        jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", savedFilm.getId());
+        jdbcTemplate.update("DELETE FROM likes WHERE film_id = ?", savedFilm.getId());
+
+        // Then - расхождение находится и устраняется пересборкой
+        assertThat(filmReadModel.findDrift()).containsExactly(savedFilm.getId());
+        filmReadModel.rebuild();
+        assertThat(filmReadModel.findDrift()).isEmpty();
+        assertThat(filmStorage.getFilm(savedFilm.getId()).orElseThrow().getGenres()).isEmpty();
+    }
+
+    @Test
+    void testFilmAndUserProjections() {
+        // Given
+        Film savedFilm = filmStorage.addFilm(Film.builder()
+                .name("Фильм для проекции")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(120)
+                .mpa(Mpa.builder().id(1).build())
+                .genres(new LinkedHashSet<>(List.of(Genre.builder().id(2).build())))
+                .build());
+        User savedUser = userStorage.addUser(User.builder()
+                .email("user1@example.com")
+                .login("user1")
+                .name("User One")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+
+        // When
+        Set<FilmField> filmFields = FilmField.parse("name,genres");
+        Film film = filmStorage.getFilm(savedFilm.getId(), filmFields).orElseThrow();
+        User user = userStorage.getUser(savedUser.getId(), UserField.parse("login")).orElseThrow();
+
+        // Then - незапрошенные поля не читаются
+        assertThat(film.getName()).isEqualTo("Фильм для проекции");
+        assertThat(film.getGenres()).extracting(Genre::getName).containsExactly("Драма");
+        assertThat(film.getDescription()).isNull();
+        assertThat(film.getMpa()).isNull();
+        assertThat(FilmField.project(film, filmFields)).containsOnlyKeys("id", "name", "genres");
+        assertThat(user.getLogin()).isEqualTo("user1");
+        assertThat(user.getEmail()).isNull();
+        assertThat(userStorage.getUser(savedUser.getId() + 1, UserField.ALL)).isEmpty();
+    }
+
+    @Test
+    void testGetFilmsAndUsersByIds() {
+        // Given
+        Mpa mpa = Mpa.builder().id(1).build();
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            filmIds.add(filmStorage.addFilm(Film.builder()
+                    .name("Фильм " + i)
+                    .description("Описание")
+                    .releaseDate(LocalDate.of(2020, 1, 1))
+                    .duration(120)
+                    .mpa(mpa)
+                    .build()).getId());
+        }
+        User savedUser = userStorage.addUser(User.builder()
+                .email("user1@example.com")
+                .login("user1")
+                .name("User One")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+
+        // When
+        Map<Long, Film> films = filmStorage.getFilms(List.of(filmIds.get(2), filmIds.get(0), 999L));
+        Map<Long, User> users = userStorage.getUsers(List.of(savedUser.getId(), 999L));
+
+        // Then
+        assertThat(films).containsOnlyKeys(filmIds.get(2), filmIds.get(0));
+        assertThat(films.get(filmIds.get(2)).getMpa().getName()).isEqualTo("G");
+        assertThat(users).containsOnlyKeys(savedUser.getId());
+        assertThat(users.get(savedUser.getId())).isEqualTo(savedUser);
+    }
+
+    @Test
+    void testRemoveUsersInBulk() {
+        // Given - три пользователя, дружба и лайки
+        List<User> users = addUsers(3);
+        Film savedFilm = filmStorage.addFilm(Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2020, 1, 1))
+                .duration(120)
+                .mpa(Mpa.builder().id(1).build())
+                .build());
+        userStorage.addFriend(users.get(0).getId(), users.get(1).getId());
+        userStorage.addFriend(users.get(2).getId(), users.get(0).getId());
+        users.forEach(user -> filmStorage.addLike(savedFilm.getId(), user.getId()));
+
+        // When - удаляем первых двух и несуществующего
+        int removed = userStorage.removeUsers(List.of(users.get(0).getId(), users.get(1).getId(), 999L));
+
+        // Then
+        assertThat(removed).isEqualTo(2);
+        assertThat(userStorage.getAllUsers()).containsExactly(users.get(2));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friends", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT like_count FROM film_read_model WHERE film_id = ?",
+                Integer.class, savedFilm.getId())).isEqualTo(1);
+        assertThat(filmReadModel.findDrift()).isEmpty();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testBulkImportWritesBatchesAndCollectsLineErrors() {
+        // Запись идёт в отдельном потоке, поэтому справочники должны быть зафиксированы, а не в транзакции теста
+        BulkImportService importService = new BulkImportService(new ObjectMapper().findAndRegisterModules(),
+                new BulkImportDbStorage(jdbcTemplate, filmReadModel, transactionTemplate, changeLog), mpaStorage, genreStorage,
+                event -> { }, 2, 1, 10, 1000);
+
+        ImportReport users = importService.importNdjson(ImportKind.USERS, ndjson(
+                "{\"id\":10,\"email\":\"a@example.com\",\"login\":\"a\",\"birthday\":\"1990-01-01\"}",
+                "{\"id\":11,\"email\":\"b@example.com\",\"login\":\"b\",\"birthday\":\"1990-01-01\"}",
+                "",
+                "{\"email\":\"broken\"",
+                "{\"email\":\"c@example.com\",\"login\":\"with space\",\"birthday\":\"1990-01-01\"}",
+                "{\"email\":\"d@example.com\",\"login\":\"d\",\"birthday\":\"1990-01-01\"}"));
+        assertThat(users.getLines()).isEqualTo(5);
+        assertThat(users.getImported()).isEqualTo(3);
+        assertThat(users.getErrors()).extracting(ImportLineError::getLine).containsExactly(4L, 5L);
+        // Автоинкремент сдвинут за загруженные id
+        assertThat(userStorage.addUser(User.builder()
+                .email("after@example.com")
+                .login("after")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build()).getId()).isGreaterThan(11L);
+
+        ImportReport films = importService.importNdjson(ImportKind.FILMS, ndjson(
+                "{\"id\":7,\"name\":\"F\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\","
+                        + "\"duration\":90,\"mpa\":{\"id\":1},\"genres\":[{\"id\":2}]}",
+                "{\"name\":\"G\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\","
+                        + "\"duration\":90,\"mpa\":{\"id\":99}}"));
+        assertThat(films.getImported()).isEqualTo(1);
+        assertThat(films.getErrors()).extracting(ImportLineError::getLine).containsExactly(2L);
+
+        // Лайк несуществующего фильма роняет свою пачку, остальные строки пачки всё равно записываются
+        ImportReport likes = importService.importNdjson(ImportKind.LIKES, ndjson(
+                "{\"filmId\":7,\"userId\":10}",
+                "{\"filmId\":70,\"userId\":10}",
+                "{\"filmId\":7,\"userId\":11}",
+                "{\"filmId\":7,\"userId\":11}"));
+        assertThat(likes.getImported()).isEqualTo(3);
+        assertThat(likes.getFailed()).isEqualTo(1);
+        assertThat(likes.getErrors().get(0).getLine()).isEqualTo(2);
+        Film imported = filmStorage.getFilm(7).orElseThrow();
+        assertThat(imported.getGenres()).extracting(Genre::getId).containsExactly(2);
+        assertThat(filmStorage.getLikeCounts()).containsEntry(7L, 2);
+        assertThat(filmStorage.getTopFilms(1)).extracting(Film::getId).containsExactly(7L);
+
+        ImportReport friends = importService.importNdjson(ImportKind.FRIENDS, ndjson(
+                "{\"userId\":10,\"friendId\":11}",
+                "{\"userId\":10,\"friendId\":10}"));
+        assertThat(friends.getImported()).isEqualTo(1);
+        assertThat(userStorage.getFriendIds(10)).extracting(User::getId).containsExactly(11L);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testBulkImportSkipsOverlongLines() {
+        BulkImportService importService = new BulkImportService(new ObjectMapper().findAndRegisterModules(),
+                new BulkImportDbStorage(jdbcTemplate, filmReadModel, transactionTemplate, changeLog), mpaStorage, genreStorage,
+                event -> { }, 2, 1, 10, 100);
+        String first = "{\"email\":\"a@example.com\",\"login\":\"a\",\"birthday\":\"1990-01-01\"}";
+        String second = "{\"email\":\"b@example.com\",\"login\":\"b\",\"birthday\":\"1990-01-01\"}";
+
+        // Длинная строка пропускается до перевода строки, последняя - до конца тела без перевода строки
+        ImportReport report = importService.importNdjson(ImportKind.USERS, new ByteArrayInputStream(
+                (first + "\r\n" + "x".repeat(100_000) + "\n" + second + "\n" + "y".repeat(101))
+                        .getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(report.getLines()).isEqualTo(4);
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getErrors()).extracting(ImportLineError::getLine).containsExactly(2L, 4L);
+        assertThat(report.getErrors().get(0).getMessage()).isEqualTo("Строка длиннее 100 символов");
+        assertThat(userStorage.getAllUsers()).extracting(User::getLogin).containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void testChangeLogAppliesOtherNodeChanges() {
+        // Второй экземпляр на той же базе: свой журнал (свой node_id), свои кэши и свой читатель журнала
+        List<Object> otherNodeEvents = new ArrayList<>();
+        CatalogStats otherNodeStats = new CatalogStats(filmStorage);
+        ChangeLog otherNodeChangeLog = new ChangeLog(jdbcTemplate);
+        FeedService otherNodeFeed = new FeedService(userStorage, feedStorage(otherNodeChangeLog), 10, 1, 100);
+        ChangeLogPoller otherNode = changeLogPoller(otherNodeChangeLog, otherNodeStats, otherNodeFeed,
+                otherNodeEvents);
+        List<Object> ownEvents = new ArrayList<>();
+        FeedService thisNodeFeed = new FeedService(userStorage, feedStorage(changeLog), 10, 1, 100);
+        ChangeLogPoller thisNode = changeLogPoller(changeLog, new CatalogStats(filmStorage), thisNodeFeed,
+                ownEvents);
+        otherNode.onApplicationReady();
+        thisNode.onApplicationReady();
+
+        Film film = filmStorage.addFilm(Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(120)
+                .mpa(Mpa.builder().id(1).build())
+                .genres(new LinkedHashSet<>(List.of(Genre.builder().id(2).build())))
+                .build());
+        User user = userStorage.addUser(User.builder()
+                .email("liker@example.com")
+                .login("liker")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        filmStorage.addLike(film.getId(), user.getId());
+
+        thisNode.poll();
+        assertThat(ownEvents).isEmpty();
+
+        otherNode.poll();
+        assertThat(otherNodeStats.getStatistics().getFilms()).isEqualTo(1);
+        assertThat(otherNodeEvents).singleElement().isInstanceOfSatisfying(LikeEvent.class, event -> {
+            assertThat(event.getFilmId()).isEqualTo(film.getId());
+            assertThat(event.getUserId()).isEqualTo(user.getId());
+            assertThat(event.isLiked()).isTrue();
+            assertThat(event.isRemote()).isTrue();
+            assertThat(event.getGenreIds()).containsExactly(2);
+        });
+
+        // Вид импорта хранится именем константы, а не её номером
+        changeLog.record(ChangeType.IMPORT, ImportKind.LIKES.name());
+        assertThat(jdbcTemplate.queryForObject("SELECT detail FROM change_log WHERE change_type = 'IMPORT'",
+                String.class)).isEqualTo("LIKES");
+        otherNode.poll();
+        assertThat(otherNodeEvents.get(1)).isInstanceOfSatisfying(ImportFinishedEvent.class,
+                event -> assertThat(event.getKind()).isEqualTo(ImportKind.LIKES));
+
+        // Ленты: id событий обоих экземпляров из общей последовательности, дописанные другим ленты перечитываются.
+        // Знаменитость - больше одного подписчика: её события идут в исходящую ленту
+        List<Long> ids = addUsers(3).stream().map(User::getId).toList();
+        long reader = ids.get(0);
+        long celebrity = ids.get(1);
+        userStorage.createFriendship(reader, user.getId());
+        userStorage.createFriendship(reader, celebrity);
+        userStorage.createFriendship(ids.get(2), celebrity);
+        assertThat(otherNodeFeed.getFeed(reader, null, 10).getEvents()).isEmpty();
+        assertThat(thisNodeFeed.getFeed(reader, null, 10).getEvents()).isEmpty();
+        like(thisNodeFeed, user.getId(), 10, true);
+        like(otherNodeFeed, user.getId(), 11, true);
+        like(thisNodeFeed, celebrity, 12, true);
+        thisNodeFeed.flush();
+        otherNodeFeed.flush();
+        otherNode.poll();
+        thisNode.poll();
+        assertThat(otherNodeFeed.getFeed(reader, null, 10).getEvents())
+                .extracting(FeedEvent::getEntityId)
+                .containsExactly(12L, 11L, 10L);
+        assertThat(thisNodeFeed.getFeed(reader, null, 10).getEvents())
+                .extracting(FeedEvent::getEntityId)
+                .containsExactly(12L, 11L, 10L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT event_id) FROM feed_events", Integer.class))
+                .isEqualTo(3);
+
+        // Запись с большим id зафиксирована раньше меньшей: меньшая применяется, когда появится
+        long lastId = changeLog.findMaxId();
+        insertChangeLogRow(lastId + 2, film.getId(), user.getId());
+        otherNode.poll();
+        insertChangeLogRow(lastId + 1, film.getId(), user.getId());
+        otherNode.poll();
+        otherNode.poll();
+        assertThat(otherNodeEvents).hasSize(4);
+    }
+
+    private ChangeLogPoller changeLogPoller(ChangeLog nodeChangeLog, CatalogStats catalogStats, FeedService feedService,
+                                            List<Object> events) {
+        FilmJsonCache filmJsonCache = new FilmJsonCache(new ObjectMapper().findAndRegisterModules(), 100);
+        PopularFilmsSnapshot popularFilmsSnapshot = new PopularFilmsSnapshot(filmStorage, filmJsonCache,
+                new SimpleMeterRegistry(), false, 10, 100);
+        return new ChangeLogPoller(nodeChangeLog, filmStorage, filmJsonCache, popularFilmsSnapshot, catalogStats,
+                new FriendGraph(userStorage, 1000, 2), feedService, events::add, 100, 60_000, 3_600_000);
+    }
+
+    private void insertChangeLogRow(long id, long filmId, long userId) {
+        jdbcTemplate.update("INSERT INTO change_log (id, node_id, change_type, entity_id, related_id) "
+                + "VALUES (?, 'third-node', 'LIKE_ADDED', ?, ?)", id, filmId, userId);
+    }
+
+    private static ByteArrayInputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,212 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class InMemoryStorageTests {
+
+    private final JdbcTemplate jdbcTemplate;
+    private InMemoryUserStorage userStorage;
+    private InMemoryFilmStorage filmStorage;
+
+    @BeforeEach
+    void setUp() {
+        // Справочники MPA и жанров остаются в базе, заполненной data.sql
+        userStorage = new InMemoryUserStorage(StorageJournal.disabled());
+        filmStorage = new InMemoryFilmStorage(new MpaDbStorage(jdbcTemplate), new GenreDbStorage(jdbcTemplate),
+                StorageJournal.disabled(), 8);
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .email(login + "@example.com")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private Film film(String name, Integer... genreIds) {
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (Integer genreId : genreIds) {
+            genres.add(Genre.builder().id(genreId).build());
+        }
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(120)
+                .mpa(Mpa.builder().id(3).build())
+                .genres(genres)
+                .build();
+    }
+
+    @Test
+    void testAddAndGetFilmResolvesReferenceData() {
+        Film savedFilm = filmStorage.addFilm(film("Фильм", 6, 1));
+
+        Optional<Film> retrievedFilm = filmStorage.getFilm(savedFilm.getId());
+
+        assertThat(retrievedFilm).isPresent();
+        assertThat(retrievedFilm.get().getMpa().getName()).isEqualTo("PG-13");
+        assertThat(retrievedFilm.get().getGenres())
+                .extracting(Genre::getName)
+                .containsExactly("Комедия", "Боевик");
+        assertThat(filmStorage.getFilm(savedFilm.getId() + 1)).isEmpty();
+    }
+
+    @Test
+    void testUpdateMissingFilm() {
+        Film missing = film("Нет такого");
+        missing.setId(42);
+
+        assertThatThrownBy(() -> filmStorage.updateFilm(missing)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testTopFilmsAndDuplicateLikes() {
+        Film film1 = filmStorage.addFilm(film("Популярный фильм"));
+        Film film2 = filmStorage.addFilm(film("Менее популярный фильм"));
+        filmStorage.addFilm(film("Непопулярный фильм"));
+
+        filmStorage.addLike(film1.getId(), 1);
+        filmStorage.addLike(film1.getId(), 2);
+        filmStorage.addLike(film2.getId(), 1);
+
+        assertThatThrownBy(() -> filmStorage.addLike(film2.getId(), 1)).isInstanceOf(NotFoundException.class);
+        assertThat(filmStorage.getTopFilms(2))
+                .extracting(Film::getName)
+                .containsExactly("Популярный фильм", "Менее популярный фильм");
+
+        filmStorage.removeLike(film1.getId(), 1);
+        filmStorage.removeLike(film1.getId(), 2);
+        assertThat(filmStorage.getTopFilms(1))
+                .extracting(Film::getName)
+                .containsExactly("Менее популярный фильм");
+    }
+
+    @Test
+    void testConcurrentLikesAreCountedOnce() throws InterruptedException {
+        Film savedFilm = filmStorage.addFilm(film("Фильм"));
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (long userId = 1; userId <= 500; userId++) {
+                    try {
+                        filmStorage.addLike(savedFilm.getId(), userId);
+                        accepted.incrementAndGet();
+                    } catch (NotFoundException ignore) {
+                        // лайк уже поставлен другим потоком
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(accepted.get()).isEqualTo(500);
+    }
+
+    @Test
+    void testFriendsAndCommonFriends() {
+        User user1 = userStorage.addUser(user("user1"));
+        User user2 = userStorage.addUser(user("user2"));
+        User user3 = userStorage.addUser(user("user3"));
+
+        userStorage.addFriend(user1.getId(), user2.getId());
+        userStorage.addFriend(user1.getId(), user3.getId());
+        userStorage.addFriend(user2.getId(), user3.getId());
+        userStorage.updateFriendStatus(user1.getId(), user2.getId(), true);
+        userStorage.updateFriendStatus(user1.getId(), user3.getId(), true);
+        userStorage.updateFriendStatus(user2.getId(), user3.getId(), true);
+
+        assertThat(userStorage.getFriendIds(user1.getId())).containsExactly(user2, user3);
+        assertThat(userStorage.getCommonFriends(user1.getId(), user2.getId())).containsExactly(user3);
+
+        userStorage.removeFriend(user1.getId(), user2.getId());
+        assertThat(userStorage.existsFriend(user1.getId(), user2.getId())).isFalse();
+    }
+
+    @Test
+    void testRemoveUserDropsFriendships() {
+        User user1 = userStorage.addUser(user("user1"));
+        User user2 = userStorage.addUser(user("user2"));
+        userStorage.addFriend(user1.getId(), user2.getId());
+        userStorage.updateFriendStatus(user1.getId(), user2.getId(), true);
+
+        userStorage.removeUser(user2);
+
+        assertThat(userStorage.getUser(user2.getId())).isEmpty();
+        assertThat(userStorage.getFriendIds(user1.getId())).isEmpty();
+        assertThatThrownBy(() -> userStorage.removeUser(user2)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testRecoveryFromSnapshotAndJournalTail(@TempDir Path journalDir) {
+        StorageJournal journal = new StorageJournal(true, journalDir, 200, null);
+        InMemoryUserStorage users = new InMemoryUserStorage(journal);
+        InMemoryFilmStorage films = new InMemoryFilmStorage(new MpaDbStorage(jdbcTemplate),
+                new GenreDbStorage(jdbcTemplate), journal, 4);
+        journal.recover(List.of(films, users));
+
+        User user1 = users.addUser(user("user1"));
+        User user2 = users.addUser(user("user2"));
+        Film film1 = films.addFilm(film("Фильм 1", 2));
+        films.addLike(film1.getId(), user1.getId());
+        journal.snapshot();
+
+        // Хвост журнала после снимка
+        Film film2 = films.addFilm(film("Фильм 2"));
+        films.addLike(film2.getId(), user1.getId());
+        films.addLike(film2.getId(), user2.getId());
+        users.addFriend(user1.getId(), user2.getId());
+        users.updateFriendStatus(user1.getId(), user2.getId(), true);
+        films.removeLike(film1.getId(), user1.getId());
+
+        // Восстановление с другим числом разделов перераскладывает лайки
+        StorageJournal recovered = new StorageJournal(true, journalDir, 200, null);
+        InMemoryUserStorage recoveredUsers = new InMemoryUserStorage(recovered);
+        InMemoryFilmStorage recoveredFilms = new InMemoryFilmStorage(new MpaDbStorage(jdbcTemplate),
+                new GenreDbStorage(jdbcTemplate), recovered, 3);
+        recovered.recover(List.of(recoveredFilms, recoveredUsers));
+
+        assertThat(recoveredUsers.getAllUsers()).containsExactly(user1, user2);
+        assertThat(recoveredUsers.getFriendIds(user1.getId())).containsExactly(user2);
+        assertThat(recoveredFilms.getFilm(film1.getId()).orElseThrow().getGenres())
+                .extracting(Genre::getName)
+                .containsExactly("Драма");
+        assertThat(recoveredFilms.getTopFilms(2))
+                .extracting(Film::getId)
+                .containsExactly(film2.getId(), film1.getId());
+        assertThat(recoveredUsers.addUser(user("user3")).getId()).isEqualTo(user2.getId() + 1);
+    }
+}
@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// HTTP-уровень целиком: согласование формата ответа, сжатие и фильтры запросов
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:web-api;DB_CLOSE_DELAY=-1",
+        "logging.level.org.zalando.logbook=INFO"})
+@AutoConfigureMockMvc
+class WebApiTests {
+    private static final int FILMS = 20;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    @BeforeEach
+    void addFilms() throws Exception {
+        if (filmsJson().size() >= FILMS) return;
+        for (int i = 0; i < FILMS; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"description\":\"" + "Описание ".repeat(15)
+                                    + "\",\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":1}}"))
+                    .andExpect(status().isCreated());
+        }
+    }
+
+    @Test
+    void testAcceptSelectsBinaryFormatsByQuality() throws Exception {
+        assertThat(contentType("application/cbor")).isEqualTo("application/cbor");
+        assertThat(contentType("application/x-jackson-smile;q=0.9, */*;q=0.5"))
+                .isEqualTo("application/x-jackson-smile");
+        assertThat(contentType("application/cbor, */*")).isEqualTo("application/cbor");
+        // JSON с большим весом выигрывает у названного CBOR
+        assertThat(contentType("application/json, application/cbor;q=0.1")).isEqualTo("application/json");
+        assertThat(contentType("application/cbor;q=0.5, */*")).isEqualTo("application/json");
+        assertThat(contentType(null)).isEqualTo("application/json");
+
+        MvcResult cbor = mockMvc.perform(get("/films").header(HttpHeaders.ACCEPT, "application/cbor"))
+                .andExpect(status().isOk())
+                .andReturn();
+        JsonNode films = new ObjectMapper(new CBORFactory()).readTree(cbor.getResponse().getContentAsByteArray());
+        assertThat(films.size()).isEqualTo(filmsJson().size());
+        MvcResult smile = mockMvc.perform(get("/films").header(HttpHeaders.ACCEPT, "application/x-jackson-smile"))
+                .andReturn();
+        assertThat(new ObjectMapper(new SmileFactory()).readTree(smile.getResponse().getContentAsByteArray()))
+                .isEqualTo(films);
+    }
+
+    @Test
+    void testLargeResponsesAreGzipped() throws Exception {
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:" + port + "/films"))
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).contains("gzip");
+        byte[] body;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            body = in.readAllBytes();
+        }
+        assertThat(response.body().length).isLessThan(body.length);
+        assertThat(new ObjectMapper().readTree(body)).isEqualTo(filmsJson());
+    }
+
+    @Test
+    void testStreamSendsTopThenCoalescedLikes() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/films/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(awaitStream(stream, "event:top")).contains("\"filmIds\":[");
+
+        long filmId = filmsJson().get(0).get("id").asLong();
+        long userId = addUser("streamer");
+        mockMvc.perform(put("/films/" + filmId + "/like/" + userId)).andExpect(status().isOk());
+
+        String likes = awaitStream(stream, "event:likes");
+        JsonNode change = new ObjectMapper().readTree(likes.substring(likes.indexOf("data:") + 5))
+                .get("changes").get(0);
+        assertThat(change.get("filmId").asLong()).isEqualTo(filmId);
+        assertThat(change.get("delta").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    void testUnknownUserAnswersNotFound() throws Exception {
+        long userId = addUser("lonely");
+        mockMvc.perform(get("/users/99999")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/users/" + userId + "/friends/common/99999"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().json("{\"Объект не найден\":\"Пользователь с ID 99999 не найден\"}"));
+    }
+
+    @Test
+    void testDriftCheckIsReadOnlyAndRepairIsPost() throws Exception {
+        long filmId = filmsJson().get(0).get("id").asLong();
+        jdbcTemplate.update("UPDATE film_read_model SET name = 'Испорчено' WHERE film_id = ?", filmId);
+        String drifted = "{\"driftedFilmIds\":[" + filmId + "]}";
+
+        // Повторный GET ничего не меняет
+        mockMvc.perform(get("/admin/read-model/drift")).andExpect(content().json(drifted, true));
+        mockMvc.perform(get("/admin/read-model/drift")).andExpect(content().json(drifted, true));
+
+        mockMvc.perform(post("/admin/read-model/drift/repair"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"driftedFilmIds\":[" + filmId + "],\"repaired\":true}", true));
+        mockMvc.perform(get("/admin/read-model/drift")).andExpect(content().json("{\"driftedFilmIds\":[]}", true));
+    }
+
+    // Ждёт кадр с указанным событием: такты потока идут по расписанию
+    private String awaitStream(MvcResult stream, String event) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            String content = stream.getResponse().getContentAsString(StandardCharsets.UTF_8);
+            int start = content.indexOf(event);
+            if (start >= 0) {
+                int end = content.indexOf("\n\n", start);
+                if (end > 0) return content.substring(start, end);
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Событие " + event + " не пришло в поток");
+    }
+
+    private long addUser(String login) throws Exception {
+        return new ObjectMapper().readTree(mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + login + "@example.com\",\"login\":\"" + login
+                                + "\",\"birthday\":\"1990-01-01\"}"))
+                .andReturn().getResponse().getContentAsByteArray()).get("id").asLong();
+    }
+
+    private String contentType(String accept) throws Exception {
+        var request = get("/films");
+        if (accept != null) request.header(HttpHeaders.ACCEPT, accept);
+        MediaType contentType = MediaType.parseMediaType(mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentType());
+        return contentType.getType() + "/" + contentType.getSubtype();
+    }
+
+    private JsonNode filmsJson() throws Exception {
+        return new ObjectMapper().readTree(mockMvc.perform(get("/films")).andReturn()
+                .getResponse().getContentAsByteArray());
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AdmissionControlInterceptorTests {
+    private final LikeController controller = new LikeController();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        // Токен раз в 2 секунды, ведро на 2 запроса, один одновременный лайк
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .addInterceptors(new AdmissionControlInterceptor(new ObjectMapper(), 64, 0.5, 2, 1, 1))
+                .build();
+    }
+
+    @Test
+    void testRateLimitedUserGetsTooManyRequestsWithRetryAfter() throws Exception {
+        mockMvc.perform(put("/films/1/like/7")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/2/like/7")).andExpect(status().isOk());
+
+        mockMvc.perform(put("/films/3/like/7"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+        assertThat(controller.handled).isEqualTo(2);
+
+        // Ограничение на пользователя, а не на фильм
+        mockMvc.perform(put("/films/3/like/8")).andExpect(status().isOk());
+    }
+
+    @Test
+    void testConcurrencyPermitIsReleasedAfterCompletion() throws Exception {
+        controller.release = new CountDownLatch(1);
+        controller.entered = new CountDownLatch(1);
+        CompletableFuture<Integer> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mockMvc.perform(put("/films/1/like/1")).andReturn().getResponse().getStatus();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(controller.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Единственное разрешение занято медленным лайком
+        mockMvc.perform(put("/films/1/like/2"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+
+        controller.release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+        controller.release = null;
+        for (long userId = 3; userId < 10; userId++) {
+            mockMvc.perform(put("/films/1/like/" + userId)).andExpect(status().isOk());
+        }
+    }
+
+    @RestController
+    static class LikeController {
+        private volatile CountDownLatch entered;
+        private volatile CountDownLatch release;
+        private volatile int handled;
+
+        @PutMapping("/films/{id}/like/{userId}")
+        public void addLike(@PathVariable long id, @PathVariable long userId) throws InterruptedException {
+            handled++;
+            CountDownLatch waitFor = release;
+            if (waitFor != null) {
+                entered.countDown();
+                waitFor.await(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserRateLimiterTests {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testBurstThenOneTokenPerInterval() {
+        // 10 запросов в секунду, ведро на 3
+        UserRateLimiter limiter = new UserRateLimiter(64, 10, 3);
+        long now = 1_000 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire(1, now)).isZero();
+        }
+        long wait = limiter.tryAcquire(1, now);
+        assertThat(wait).isEqualTo(SECOND / 10);
+
+        // Другой пользователь не зависит от первого
+        assertThat(limiter.tryAcquire(2, now)).isZero();
+
+        assertThat(limiter.tryAcquire(1, now + wait - 1)).isPositive();
+        assertThat(limiter.tryAcquire(1, now + wait)).isZero();
+        assertThat(limiter.tryAcquire(1, now + wait)).isPositive();
+
+        // За время простоя ведро наполняется не больше чем до burst
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire(1, later)).isZero();
+        }
+        assertThat(limiter.tryAcquire(1, later)).isPositive();
+    }
+
+    @Test
+    void testSlotCollisionStartsNewUserWithFullBucket() {
+        // Минимальная таблица: пользователей больше, чем слотов, каждый новый получает полное ведро
+        UserRateLimiter limiter = new UserRateLimiter(1, 1, 1);
+        long now = 1_000 * SECOND;
+        for (long userId = 1; userId <= 1_000; userId++) {
+            assertThat(limiter.tryAcquire(userId, now)).isZero();
+        }
+    }
+}
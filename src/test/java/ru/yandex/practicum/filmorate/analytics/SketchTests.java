@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SketchTests {
+
+    @Test
+    void testHyperLogLogStaysWithinErrorBound() {
+        HyperLogLog small = new HyperLogLog(12);
+        HyperLogLog large = new HyperLogLog(12);
+        for (long id = 1; id <= 100; id++) {
+            small.add(id);
+            small.add(id);
+        }
+        for (long id = 1; id <= 100_000; id++) {
+            large.add(id);
+            large.add(id);
+        }
+
+        // Три стандартные ошибки
+        double bound = 3 * large.getRelativeStandardError();
+        assertThat((double) small.estimate()).isCloseTo(100, within(100 * bound));
+        assertThat((double) large.estimate()).isCloseTo(100_000, within(100_000 * bound));
+        assertThat(HyperLogLog.fromBytes(large.toBytes()).estimate()).isEqualTo(large.estimate());
+    }
+
+    @Test
+    void testHeavyHittersNeverUnderestimate() {
+        HeavyHitters heavyHitters = new HeavyHitters(2048, 4, 16);
+        for (int i = 0; i < 1000; i++) {
+            heavyHitters.add(1);
+        }
+        for (int i = 0; i < 500; i++) {
+            heavyHitters.add(2);
+        }
+        for (long id = 100; id < 5100; id++) {
+            heavyHitters.add(id);
+        }
+
+        List<Map.Entry<Long, Long>> top = heavyHitters.top(2);
+        assertThat(top).extracting(Map.Entry::getKey).containsExactly(1L, 2L);
+        assertThat(top.get(0).getValue()).isBetween(1000L, 1000L + heavyHitters.getMaxOverestimate());
+        assertThat(top.get(1).getValue()).isBetween(500L, 500L + heavyHitters.getMaxOverestimate());
+        assertThat(HeavyHitters.fromBytes(heavyHitters.toBytes()).top(2)).isEqualTo(top);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.exception;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorBodiesTests {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testRenderEscapesJson() throws Exception {
+        ErrorBodies bodies = new ErrorBodies();
+        String message = "Фильм \"Кин-дза-дза!\" \\ путь\nвторая\tстрока\r\u0001";
+
+        JsonNode body = objectMapper.readTree(bodies.get("Заголовок \"ошибки\"", message));
+
+        assertThat(body.size()).isEqualTo(1);
+        assertThat(body.get("Заголовок \"ошибки\"").asText()).isEqualTo(message);
+        assertThat(new String(bodies.get("Объект не найден", null), StandardCharsets.UTF_8))
+                .isEqualTo("{\"Объект не найден\":\"\"}");
+    }
+
+    @Test
+    void testCachedBodiesAreCapped() {
+        ErrorBodies bodies = new ErrorBodies();
+        for (int i = 0; i < ErrorBodies.MAX_ENTRIES; i++) {
+            bodies.get("Объект не найден", "Фильм " + i + " не найден");
+        }
+        // Закэшированное тело отдаётся тем же массивом
+        assertThat(bodies.get("Объект не найден", "Фильм 0 не найден"))
+                .isSameAs(bodies.get("Объект не найден", "Фильм 0 не найден"));
+
+        // Сверх лимита тело собирается заново на каждый вызов, но остаётся тем же по содержимому
+        byte[] first = bodies.get("Объект не найден", "Фильм -1 не найден");
+        byte[] second = bodies.get("Объект не найден", "Фильм -1 не найден");
+        assertThat(second).isNotSameAs(first).isEqualTo(first);
+
+        // Лимит считается для каждого заголовка отдельно
+        assertThat(bodies.get("Конфликт данных", "Лайк уже поставлен"))
+                .isSameAs(bodies.get("Конфликт данных", "Лайк уже поставлен"));
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.exception;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorHandlerTests {
+    private final ErrorHandler errorHandler = new ErrorHandler();
+
+    @Test
+    void testDomainExceptionHasNoStackTraceOrSuppressed() {
+        NotFoundException e = new NotFoundException("Фильм не найден");
+        e.addSuppressed(new IllegalStateException());
+
+        assertThat(e).isInstanceOf(DomainException.class).hasMessage("Фильм не найден");
+        assertThat(e.getStackTrace()).isEmpty();
+        assertThat(e.getSuppressed()).isEmpty();
+        assertThat(e.getCause()).isNull();
+    }
+
+    @Test
+    void testDomainErrorsKeepJsonShape() throws Exception {
+        assertBody(errorHandler.handleNotFoundException(new NotFoundException("Фильм не найден")),
+                HttpStatus.NOT_FOUND, "Объект не найден", "Фильм не найден");
+        assertBody(errorHandler.handleValidationException(new ValidationException("Пустое имя")),
+                HttpStatus.BAD_REQUEST, "Ошибка валидации", "Пустое имя");
+        assertBody(errorHandler.handleAlreadyExistsException(new AlreadyExistsException("Лайк уже поставлен")),
+                HttpStatus.CONFLICT, "Конфликт данных", "Лайк уже поставлен");
+    }
+
+    private static void assertBody(ResponseEntity<byte[]> response, HttpStatus status, String title, String message)
+            throws Exception {
+        assertThat(response.getStatusCode()).isEqualTo(status);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(new ObjectMapper().readValue(response.getBody(), Map.class))
+                .containsExactlyEntriesOf(Map.of(title, message));
+    }
+}
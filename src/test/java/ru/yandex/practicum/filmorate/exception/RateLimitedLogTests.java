@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.exception;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitedLogTests {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testLimitPerSecondAndSuppressedCount() {
+        long now = 1_000 * SECOND;
+        RateLimitedLog log = new RateLimitedLog(2, now);
+        assertThat(log.tryAcquire(now)).isZero();
+        assertThat(log.tryAcquire(now + 1)).isZero();
+        for (int i = 0; i < 5; i++) {
+            assertThat(log.tryAcquire(now + SECOND - 1)).isEqualTo(-1);
+        }
+
+        // Новая секунда: первая запись сообщает о пропущенных, следующая - уже нет
+        assertThat(log.tryAcquire(now + SECOND)).isEqualTo(5);
+        assertThat(log.tryAcquire(now + SECOND)).isZero();
+        assertThat(log.tryAcquire(now + SECOND)).isEqualTo(-1);
+        assertThat(log.tryAcquire(now + 3 * SECOND)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.graph;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class FriendGraphTests {
+
+    @Test
+    void testConcurrentSearchesBeyondPoolSizeGetCorrectPaths() throws Exception {
+        // Цепочка 1-2-...-100: пул из одного набора массивов, поисков одновременно больше
+        UserStorage userStorage = mock(UserStorage.class);
+        doAnswer(invocation -> {
+            BiConsumer<Long, Long> consumer = invocation.getArgument(0);
+            for (long id = 1; id < 100; id++) {
+                consumer.accept(id, id + 1);
+            }
+            return null;
+        }).when(userStorage).forEachFriendship(any());
+        FriendGraph friendGraph = new FriendGraph(userStorage, 100_000, 1);
+        friendGraph.rebuildIfDirty();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> degrees = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                long target = 2 + i % 98;
+                degrees.add(executor.submit(() -> friendGraph.findPath(1, target, 100).getDegrees()));
+            }
+            for (int i = 0; i < degrees.size(); i++) {
+                assertThat(degrees.get(i).get(10, TimeUnit.SECONDS)).isEqualTo(1 + i % 98);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathSearchTests {
+
+    private static CsrGraph graph(long[]... edges) {
+        long[] from = new long[edges.length];
+        long[] to = new long[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            from[i] = edges[i][0];
+            to[i] = edges[i][1];
+        }
+        return CsrGraph.build(from, to, edges.length);
+    }
+
+    private static long[] ids(CsrGraph graph, int[] path) {
+        long[] ids = new long[path.length];
+        for (int i = 0; i < path.length; i++) {
+            ids[i] = graph.idOf(path[i]);
+        }
+        return ids;
+    }
+
+    @Test
+    void testFindsShortestPathAlongFriendshipDirection() {
+        // Длинная цепочка 10-20-30-40-50 и обход 10-60-50; 50 -> 10 пути нет
+        CsrGraph graph = graph(new long[]{10, 20}, new long[]{20, 30}, new long[]{30, 40}, new long[]{40, 50},
+                new long[]{10, 60}, new long[]{60, 50});
+        PathSearch search = new PathSearch();
+
+        int[] path = search.find(graph, graph.indexOf(10), graph.indexOf(50), 10, 1000);
+        assertThat(ids(graph, path)).containsExactly(10, 60, 50);
+
+        int[] chain = search.find(graph, graph.indexOf(20), graph.indexOf(50), 10, 1000);
+        assertThat(ids(graph, chain)).containsExactly(20, 30, 40, 50);
+        assertThat(search.find(graph, graph.indexOf(20), graph.indexOf(50), 2, 1000)).isEmpty();
+        assertThat(search.find(graph, graph.indexOf(50), graph.indexOf(10), 10, 1000)).isEmpty();
+        assertThat(search.isBudgetExceeded()).isFalse();
+    }
+
+    @Test
+    void testStopsWhenExpansionBudgetIsSpent() {
+        long[][] edges = new long[200][];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new long[]{i, i + 1};
+        }
+        CsrGraph graph = graph(edges);
+        PathSearch search = new PathSearch();
+
+        assertThat(search.find(graph, graph.indexOf(0), graph.indexOf(200), 300, 50)).isEmpty();
+        assertThat(search.isBudgetExceeded()).isTrue();
+        // Состояние экземпляра переиспользуется между поисками
+        assertThat(search.find(graph, graph.indexOf(0), graph.indexOf(200), 300, 1000)).hasSize(201);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmJsonCacheTests {
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private static Film film(long id, String name) {
+        return Film.builder()
+                .id(id)
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1).name("G").build())
+                .build();
+    }
+
+    @Test
+    void testFragmentReadBeforeInvalidateIsNotCached() throws Exception {
+        FilmJsonCache cache = new FilmJsonCache(objectMapper, 10);
+        // Фильм прочитан до изменения, а сериализуется после сброса
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+        byte[] stale = cache.toJson(film(1, "Старое название"), stamp);
+        assertThat(objectMapper.readValue(stale, Film.class).getName()).isEqualTo("Старое название");
+        assertThat(cache.size()).isZero();
+
+        byte[] fresh = cache.toJson(film(1, "Новое название"), cache.stamp());
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.toJson(film(1, "Другое"), cache.stamp())).isSameAs(fresh);
+    }
+
+    @Test
+    void testFullCacheEvictsFragmentsNotReadSinceLastPass() {
+        FilmJsonCache cache = new FilmJsonCache(objectMapper, 2);
+        byte[] first = cache.toJson(film(1, "Первый"), cache.stamp());
+        byte[] second = cache.toJson(film(2, "Второй"), cache.stamp());
+        cache.toJson(film(1, "Первый"), cache.stamp());
+
+        cache.toJson(film(3, "Третий"), cache.stamp());
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.toJson(film(1, "Первый"), cache.stamp())).isSameAs(first);
+        assertThat(cache.toJson(film(2, "Второй"), cache.stamp())).isNotSameAs(second);
+
+        // Кэш продолжает принимать новые фильмы и после заполнения
+        for (long id = 10; id < 100; id++) {
+            cache.toJson(film(id, "Фильм " + id), cache.stamp());
+        }
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testJsonArrayJoinsFragments() throws Exception {
+        FilmJsonCache cache = new FilmJsonCache(objectMapper, 10);
+        assertThat(new String(cache.toJsonArray(List.of(), cache.stamp()), StandardCharsets.UTF_8)).isEqualTo("[]");
+
+        byte[] array = cache.toJsonArray(List.of(film(1, "Первый"), film(2, "Второй")), cache.stamp());
+        Film[] films = objectMapper.readValue(array, Film[].class);
+        assertThat(films).extracting(Film::getName).containsExactly("Первый", "Второй");
+        assertThat(new String(array, StandardCharsets.UTF_8))
+                .isEqualTo("[" + new String(cache.toJson(film(1, "x"), cache.stamp()), StandardCharsets.UTF_8)
+                        + "," + new String(cache.toJson(film(2, "x"), cache.stamp()), StandardCharsets.UTF_8) + "]");
+    }
+}
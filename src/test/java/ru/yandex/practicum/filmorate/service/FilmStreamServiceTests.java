@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmStreamServiceTests {
+
+    @Test
+    void testLikesArrivingDuringDrainAreNotLost() throws InterruptedException {
+        FilmStreamService stream = new FilmStreamService(null, new ObjectMapper(), 10, 64, 1000, 1000);
+        int threads = 4;
+        int likesPerThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < likesPerThread; j++) {
+                    stream.onLike(LikeEvent.builder().filmId(j % 3).liked(true).build());
+                }
+            });
+        }
+
+        // Такты идут одновременно с лайками, сумма всех изменений должна сойтись
+        long total = 0;
+        AtomicBoolean finished = new AtomicBoolean();
+        executor.shutdown();
+        while (!finished.get()) {
+            finished.set(executor.awaitTermination(1, TimeUnit.MILLISECONDS));
+            total += sum(stream.drainPendingLikes());
+        }
+        total += sum(stream.drainPendingLikes());
+        assertThat(total).isEqualTo((long) threads * likesPerThread);
+    }
+
+    @Test
+    void testOpposingLikesCollapseToNoChange() {
+        FilmStreamService stream = new FilmStreamService(null, new ObjectMapper(), 10, 64, 1000, 1000);
+        stream.onLike(LikeEvent.builder().filmId(1).liked(true).build());
+        stream.onLike(LikeEvent.builder().filmId(1).liked(false).build());
+        stream.onLike(LikeEvent.builder().filmId(2).liked(true).build());
+        stream.onLike(LikeEvent.builder().filmId(2).liked(true).build());
+
+        assertThat(stream.drainPendingLikes()).containsExactly(Map.entry(2L, 2));
+        assertThat(stream.drainPendingLikes()).isEmpty();
+    }
+
+    private static long sum(Map<Long, Integer> changes) {
+        return changes.values().stream().mapToLong(Integer::longValue).sum();
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.event.LikeEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class PopularFilmsSnapshotTests {
+    private final FilmStorage filmStorage = mock(FilmStorage.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PopularFilmsSnapshot snapshot;
+
+    @AfterEach
+    void tearDown() {
+        if (snapshot != null) snapshot.destroy();
+    }
+
+    private PopularFilmsSnapshot snapshot(boolean enabled, int size, int refreshAfterLikes) {
+        snapshot = new PopularFilmsSnapshot(filmStorage, new FilmJsonCache(new ObjectMapper(), 10), meterRegistry,
+                enabled, size, refreshAfterLikes);
+        return snapshot;
+    }
+
+    private static List<Film> films(long... ids) {
+        List<Film> films = new ArrayList<>();
+        for (long id : ids) {
+            films.add(Film.builder().id(id).name("Фильм " + id).build());
+        }
+        return films;
+    }
+
+    private double age() {
+        return meterRegistry.get("filmorate.popular.snapshot.age").gauge().value();
+    }
+
+    @Test
+    void testSliceServesPrefixOfBuiltSnapshot() {
+        when(filmStorage.getTopFilms(3)).thenReturn(films(5, 4, 3));
+        PopularFilmsSnapshot popular = snapshot(true, 3, 100);
+        assertThat(popular.slice(2)).isEmpty();
+        assertThat(age()).isNaN();
+
+        popular.requestRefresh();
+        verify(filmStorage, timeout(5000)).getTopFilms(3);
+        await(() -> popular.slice(2).isPresent());
+
+        assertThat(popular.slice(2).orElseThrow().films()).extracting(Film::getId).containsExactly(5L, 4L);
+        assertThat(popular.slice(3).orElseThrow().films()).hasSize(3);
+        assertThat(popular.slice(0).orElseThrow().films()).isEmpty();
+        // Больше, чем в снимке, - только из хранилища
+        assertThat(popular.slice(4)).isEmpty();
+        assertThat(popular.slice(-1)).isEmpty();
+        assertThat(age()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void testDisabledSnapshotNeverRefreshes() {
+        PopularFilmsSnapshot popular = snapshot(false, 3, 1);
+        popular.requestRefresh();
+        popular.onLike(LikeEvent.builder().filmId(1).liked(true).build());
+        assertThat(popular.slice(1)).isEmpty();
+        verifyNoInteractions(filmStorage);
+    }
+
+    @Test
+    void testRefreshAfterKLikes() {
+        when(filmStorage.getTopFilms(anyInt())).thenReturn(films(1));
+        PopularFilmsSnapshot popular = snapshot(true, 1, 3);
+        popular.onLike(LikeEvent.builder().filmId(1).liked(true).build());
+        popular.onLike(LikeEvent.builder().filmId(1).liked(false).build());
+        verify(filmStorage, after(200).never()).getTopFilms(anyInt());
+
+        popular.onLike(LikeEvent.builder().filmId(1).liked(true).build());
+        verify(filmStorage, timeout(5000)).getTopFilms(1);
+    }
+
+    @Test
+    void testRequestDuringRefreshRunsOneMoreRefresh() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(filmStorage.getTopFilms(anyInt()))
+                .thenAnswer(invocation -> {
+                    entered.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return films(1);
+                })
+                .thenReturn(films(2));
+        PopularFilmsSnapshot popular = snapshot(true, 1, 100);
+
+        popular.requestRefresh();
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        // Фильм изменился, пока идёт пересчёт: оба запроса схлопываются в один повторный пересчёт
+        popular.requestRefresh();
+        popular.requestRefresh();
+        release.countDown();
+
+        verify(filmStorage, timeout(5000).times(2)).getTopFilms(1);
+        await(() -> popular.slice(1).map(slice -> slice.films().get(0).getId() == 2).orElse(false));
+        verify(filmStorage, after(200).times(2)).getTopFilms(1);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTests {
+
+    @Test
+    void testConcurrentCallsShareOneComputation() throws Exception {
+        SingleFlight<Integer, Object> flights = new SingleFlight<>();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        List<Future<Object>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flights.execute(10, () -> {
+            computations.incrementAndGet();
+            started.countDown();
+            await(release);
+            return new Object();
+        })));
+        started.await();
+        for (int i = 0; i < 7; i++) {
+            results.add(executor.submit(() -> flights.execute(10, () -> {
+                computations.incrementAndGet();
+                return new Object();
+            })));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        Object first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<Object> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+        }
+        assertThat(computations.get()).isEqualTo(1);
+        executor.shutdown();
+
+        // Результат не кэшируется после завершения
+        assertThat(flights.execute(10, Object::new)).isNotSameAs(first);
+    }
+
+    @Test
+    void testInvalidateStartsNewFlightAndErrorsAreShared() throws Exception {
+        SingleFlight<Integer, String> flights = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        Future<String> stale = executor.submit(() -> flights.execute(1, () -> {
+            await(release);
+            return "до записи";
+        }));
+        Thread.sleep(100);
+        flights.invalidate();
+
+        assertThat(flights.execute(1, () -> "после записи")).isEqualTo("после записи");
+        release.countDown();
+        assertThat(stale.get(5, TimeUnit.SECONDS)).isEqualTo("до записи");
+        executor.shutdown();
+
+        assertThatThrownBy(() -> flights.execute(2, () -> {
+            throw new IllegalStateException("ошибка");
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
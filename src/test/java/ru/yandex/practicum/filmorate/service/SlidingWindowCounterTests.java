@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SlidingWindowCounterTests {
+
+    @Test
+    void testOldBucketsLeaveTheWindowAndDecay() {
+        // 4 корзины по 1000 мс
+        SlidingWindowCounter counter = new SlidingWindowCounter(4, 1000);
+        counter.add(10_000);
+        counter.add(10_500);
+        counter.add(12_000);
+
+        assertThat(counter.count(12_999)).isEqualTo(3);
+        assertThat(counter.score(12_999, 2)).isCloseTo(2 * 0.5 + 1, within(1e-9));
+
+        // Интервал 14 занимает корзину интервала 10, который вышел из окна
+        counter.add(14_000);
+        assertThat(counter.count(14_000)).isEqualTo(2);
+        // Событие старше окна не попадает в уже повернувшуюся корзину
+        counter.add(10_100);
+        assertThat(counter.count(14_000)).isEqualTo(2);
+        assertThat(counter.count(20_000)).isZero();
+    }
+
+    @Test
+    void testConcurrentAddsAreNotLost() throws InterruptedException {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60, 60_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    counter.add(3_600_000);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(counter.count(3_600_000)).isEqualTo(80_000);
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.graph.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class UserServiceTests {
+    private final UserStorage userStorage = mock(UserStorage.class);
+
+    @Test
+    void testPurgeWithNonPositiveChunkSizeRemovesOneByOne() {
+        when(userStorage.removeUsers(anyList())).thenAnswer(invocation -> invocation.<List<Long>>getArgument(0).size());
+        // Размер пачки 0 из настроек не зацикливает удаление, а превращается в 1
+        UserService userService = new UserService(userStorage, event -> { }, mock(FriendGraph.class), 0, 0, 10);
+
+        assertThat(userService.removeUsers(List.of(1L, 2L, 2L, 3L))).isEqualTo(3);
+
+        verify(userStorage).removeUsers(List.of(1L));
+        verify(userStorage).removeUsers(List.of(2L));
+        verify(userStorage).removeUsers(List.of(3L));
+        verifyNoMoreInteractions(userStorage);
+    }
+
+    @Test
+    void testNonPositiveMaxPathDepthIsRejectedAtStartup() {
+        assertThatThrownBy(() -> new UserService(userStorage, event -> { }, mock(FriendGraph.class), 500, 50, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
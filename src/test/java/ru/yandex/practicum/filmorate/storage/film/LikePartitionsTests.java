@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LikePartitionsTests {
+
+    @Test
+    void testParallelTopMatchesSinglePartition() {
+        // Каталог больше порога параллельного подсчёта, много фильмов с равным числом лайков
+        LikePartitions single = new LikePartitions(1, ForkJoinPool.commonPool());
+        LikePartitions partitioned = new LikePartitions(7, ForkJoinPool.commonPool());
+        Random random = new Random(42);
+        for (long filmId = 1; filmId <= 10_000; filmId++) {
+            single.register(filmId);
+            partitioned.register(filmId);
+            int likes = random.nextInt(20);
+            for (long userId = 1; userId <= likes; userId++) {
+                single.add(filmId, userId);
+                partitioned.add(filmId, userId);
+            }
+        }
+
+        List<long[]> expected = single.top(50);
+        List<long[]> actual = partitioned.top(50);
+        assertThat(actual).hasSize(50);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i)).containsExactly(expected.get(i));
+        }
+        assertThat(partitioned.top(20_000)).hasSize(10_000);
+    }
+
+    @Test
+    void testPartitionCountersFollowLikesAndRemovedFilms() {
+        LikePartitions partitions = new LikePartitions(4, ForkJoinPool.commonPool());
+        for (long filmId = 1; filmId <= 100; filmId++) {
+            partitions.register(filmId);
+            partitions.add(filmId, 1);
+            partitions.add(filmId, 2);
+        }
+        assertThat(partitions.add(1, 1)).contains(false);
+        assertThat(partitions.add(1000, 1)).isEmpty();
+        assertThat(partitions.partitionLikes()).doesNotContain(0L);
+        assertThat(sum(partitions.partitionLikes())).isEqualTo(200);
+
+        partitions.remove(1, 1);
+        partitions.unregister(2);
+        assertThat(partitions.remove(2, 1)).isFalse();
+        assertThat(sum(partitions.partitionLikes())).isEqualTo(197);
+        assertThat(partitions.top(1).get(0)).containsExactly(3, 2);
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
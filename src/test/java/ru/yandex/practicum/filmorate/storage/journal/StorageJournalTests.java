@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageJournalTests {
+
+    @Test
+    void testSnapshotChecksumSpanningMappedChunks(@TempDir Path journalDir) throws Exception {
+        // Куски по 16 байт: при разной длине данных контрольная сумма попадает на любое место границы
+        for (int length = 0; length < 16; length++) {
+            Path dir = journalDir.resolve("len-" + length);
+            byte[] data = new byte[length];
+            Arrays.fill(data, (byte) length);
+
+            StorageJournal journal = new StorageJournal(true, dir, 0, null);
+            journal.setMapChunk(16);
+            BlobStorage blob = new BlobStorage(data);
+            journal.recover(List.of(blob));
+            journal.destroy();
+
+            StorageJournal recovered = new StorageJournal(true, dir, 0, null);
+            BlobStorage restored = new BlobStorage(new byte[0]);
+            recovered.recover(List.of(restored));
+            recovered.destroy();
+            assertThat(restored.data).containsExactly(data);
+        }
+    }
+
+    private static final class BlobStorage implements JournaledStorage {
+        private byte[] data;
+
+        private BlobStorage(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public String getJournalSection() {
+            return "blob";
+        }
+
+        @Override
+        public boolean supports(JournalOperation operation) {
+            return false;
+        }
+
+        @Override
+        public void replay(JournalOperation operation, DataInput in) {
+            throw new IllegalStateException();
+        }
+
+        @Override
+        public void writeSnapshot(DataOutput out) throws IOException {
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        @Override
+        public void readSnapshot(DataInput in) throws IOException {
+            data = new byte[in.readInt()];
+            in.readFully(data);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.validation;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelValidatorTests {
+
+    private static Film.FilmBuilder film() {
+        return Film.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(ModelValidator.BIRTHDAY_CINEMA)
+                .duration(90)
+                .mpa(Mpa.builder().id(1).build());
+    }
+
+    @Test
+    void testFilmRules() {
+        ModelValidator.validateFilm(film().build());
+        ModelValidator.validateFilm(film().description("д".repeat(ModelValidator.DESCRIPTION_MAX_LENGTH)).build());
+
+        // Без даты релиза - ошибка валидации, а не NullPointerException
+        assertThatThrownBy(() -> ModelValidator.validateFilm(film().releaseDate(null).build()))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Некорректная дата релиза!");
+        assertThatThrownBy(() -> ModelValidator.validateFilm(
+                film().releaseDate(ModelValidator.BIRTHDAY_CINEMA.minusDays(1)).build()))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> ModelValidator.validateFilm(
+                film().description("д".repeat(ModelValidator.DESCRIPTION_MAX_LENGTH + 1)).build()))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> ModelValidator.validateFilm(film().duration(0).build()))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> ModelValidator.validateFilm(film().mpa(null).build()))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void testUserRulesAndNameDefault() {
+        User user = User.builder()
+                .email("user@example.com")
+                .login("login")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        ModelValidator.validateUser(user);
+        assertThat(user.getName()).isEqualTo("login");
+
+        user.setLogin("with space");
+        assertThatThrownBy(() -> ModelValidator.validateUser(user))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Некорректный логин!");
+        user.setLogin("login");
+        user.setBirthday(null);
+        assertThatThrownBy(() -> ModelValidator.validateUser(user)).isInstanceOf(ValidationException.class);
+    }
+}